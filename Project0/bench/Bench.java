@@ -0,0 +1,221 @@
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ *     Benchmarks of {@link Matrix}, {@link BigDecimalMatrix}, {@link CSVReader} and {@link CSVWriter}.
+ * </p>
+ * <p>
+ *     Every benchmark runs a number of warmup iterations, which are discarded, followed by the measured
+ *     iterations. An iteration repeats the operation until the iteration time has passed, at least once, and
+ *     yields the average time per operation. The mean and the standard deviation over the measured iterations are
+ *     reported together with the throughput. Results are consumed so the JIT cannot eliminate the operations.
+ * </p>
+ * <p>
+ *     Usage: {@code java Bench [-warmup N] [-iterations N] [-time MS] [-shapes MxN,...] [suite ...]}, where the
+ *     suites are {@code mul}, {@code transpose}, {@code gram}, {@code invert}, {@code dot}, {@code parse},
+ *     {@code write} and {@code bigdecimal}, all by default. The CSV suites read and write synthetic data in the
+ *     schema of train.csv with M samples and N features, see {@link TrainData}.
+ * </p>
+ */
+public class Bench {
+    private static final String[] SUITES = {"mul", "transpose", "gram", "invert", "dot", "parse", "write", "bigdecimal"};
+    private static final String[] SHAPES = {"10000x10", "100000x100", "1000000x10", "100x100", "1000x1000"};
+    private static final long BIG_DECIMAL_WORK = 100_000_000L; //Upper bound of M * N * N for BigDecimalMatrix
+    private static int warmups = 3;
+    private static int iterations = 5;
+    private static long timeNanos = 1_000_000_000L;
+    private static int sink = 0; //Consumes the results, a static field cannot be optimized away
+
+    public static void main(String[] args) {
+        List<String> shapes = new ArrayList<>();
+        List<String> suites = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-warmup": warmups = Integer.parseInt(args[++i]); break;
+                case "-iterations": iterations = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "-time": timeNanos = Long.parseLong(args[++i]) * 1_000_000L; break;
+                case "-shapes": shapes.addAll(List.of(args[++i].split(","))); break;
+                default: suites.add(args[i]);
+            }
+        }
+        if (shapes.isEmpty())
+            shapes.addAll(List.of(SHAPES));
+        if (suites.isEmpty())
+            suites.addAll(List.of(SUITES));
+        System.out.println("Java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors()
+                + " processors, " + warmups + " warmup and " + iterations + " measured iterations of " + timeNanos / 1_000_000L + "ms");
+        System.out.printf("%-28s %-14s %16s %12s %14s%n", "Benchmark", "Shape", "ns/op", "+-", "Throughput");
+        for (String shape : shapes) {
+            String[] mn = shape.split("x");
+            int m = Integer.parseInt(mn[0]), n = Integer.parseInt(mn[1]);
+            for (String suite : suites)
+                run(suite, m, n);
+        }
+        Matrix.printSystemInfo();
+    }
+
+    private static void run(String suite, int m, int n) {
+        if ((long) m * n > Integer.MAX_VALUE) { //Matrix is indexed by int
+            System.out.printf("%-28s %-14s %s%n", suite, m + "x" + n, "skipped, more than 2^31 - 1 elements");
+            return;
+        }
+        switch (suite) {
+            case "mul": mul(m, n); break;
+            case "transpose": transpose(m, n); break;
+            case "gram": gram(m, n); break;
+            case "invert": invert(n); break;
+            case "dot": dot(m, n); break;
+            case "parse": parse(m, n); break;
+            case "write": write(m, n); break;
+            case "bigdecimal": bigDecimal(m, n); break;
+            default: throw new RuntimeException("Unknown suite " + suite);
+        }
+    }
+
+    private static void mul(int m, int n) {
+        Matrix a = random(m, n, 1), b = random(n, n, 2), dest = new Matrix(m, n);
+        double gflop = 2d * m * n * n / 1e9;
+        measure("Matrix.mul", m, n, gflop, "GFLOP/s", () -> a.mul(b, dest));
+        measure("Matrix.mul (pool)", m, n, gflop, "GFLOP/s", () -> a.mul(b, dest, ForkJoinPool.commonPool()));
+    }
+
+    private static void transpose(int m, int n) {
+        Matrix a = random(m, n, 1), dest = new Matrix(n, m);
+        double mb = 8d * m * n / 1e6;
+        measure("Matrix.transpose", m, n, mb, "MB/s", () -> a.transpose(dest));
+        measure("Matrix.transpose (pool)", m, n, mb, "MB/s", () -> a.transpose(dest, ForkJoinPool.commonPool()));
+    }
+
+    private static void gram(int m, int n) {
+        Matrix a = random(m, n, 1), dest = new Matrix(n, n);
+        double gflop = (double) m * n * (n + 1) / 1e9; //Only one triangle is computed
+        measure("Matrix.gram", m, n, gflop, "GFLOP/s", () -> a.gram(dest));
+        measure("Matrix.gram (pool)", m, n, gflop, "GFLOP/s", () -> a.gram(dest, ForkJoinPool.commonPool()));
+    }
+
+    private static void invert(int n) {
+        Matrix a = random(n, n, 1), dest = new Matrix(n, n);
+        double[] data = a.data();
+        for (int i = 0; i < n; ++i) //Make it diagonally dominant, hence well-conditioned
+            data[i * n + i] += n;
+        measure("Matrix.invert", n, n, 2d * n * n * n / 1e9, "GFLOP/s", () -> a.invert(dest));
+    }
+
+    private static void dot(int m, int n) {
+        Matrix a = random(m, n, 1), b = random(m, n, 2);
+        measure("Matrix.dot", m, n, 2d * m * n / 1e9, "GFLOP/s", () -> a.dot(b));
+    }
+
+    private static void parse(int m, int n) {
+        File file = temp();
+        TrainData.write(file.getPath(), m, n, 42L);
+        double mb = file.length() / 1e6;
+        measure("CSVReader (sequential)", m, n, mb, "MB/s", () -> {
+            CSVReader rdr = new CSVReader(file.getPath());
+            rdr.nextLine(); //Consume the column headers
+            double acc = 0d;
+            while (rdr.hasNext()) {
+                acc += rdr.nextInt();
+                for (int j = 0; j <= n; ++j)
+                    acc += rdr.nextDouble();
+            }
+            rdr.close();
+            return acc;
+        });
+        measure("CSVReader.readColumnMajor", m, n, mb, "MB/s",
+                () -> CSVReader.readColumnMajor(file.getPath(), 1, ForkJoinPool.commonPool(), 1, 1, n));
+        file.delete();
+    }
+
+    private static void write(int m, int n) {
+        File file = temp();
+        double[] data = random(m, n, 1).data();
+        Op op = () -> {
+            CSVWriter wtr = new CSVWriter(file.getPath());
+            for (int i = 0; i < m; ++i) {
+                wtr.nextInt(i);
+                for (int j = 0, index = i; j < n; ++j, index += m)
+                    wtr.nextDouble(data[index]);
+                wtr.nextRecord();
+            }
+            wtr.close();
+            return wtr;
+        };
+        op.run(); //Determine the size of the output
+        measure("CSVWriter", m, n, file.length() / 1e6, "MB/s", op);
+        file.delete();
+    }
+
+    private static void bigDecimal(int m, int n) {
+        if ((long) m * n * n > BIG_DECIMAL_WORK) {
+            System.out.printf("%-28s %-14s %s%n", "BigDecimalMatrix", m + "x" + n, "skipped, too slow");
+            return;
+        }
+        double[] data = random(m, n, 1).data();
+        BigDecimal[] xData = new BigDecimal[m * n];
+        for (int i = 0; i < xData.length; ++i)
+            xData[i] = BigDecimal.valueOf(data[i]);
+        BigDecimalMatrix x = new BigDecimalMatrix(m, n, xData);
+        BigDecimalMatrix xt = x.transpose(new BigDecimalMatrix(n, m));
+        BigDecimalMatrix xtx = xt.mul(x, new BigDecimalMatrix(n, n));
+        BigDecimalMatrix dest = new BigDecimalMatrix(n, n);
+        measure("BigDecimalMatrix.transpose", m, n, 8d * m * n / 1e6, "MB/s", () -> x.transpose(xt));
+        measure("BigDecimalMatrix.mul", m, n, 2d * m * n * n / 1e9, "GFLOP/s", () -> xt.mul(x, xtx));
+        if (m >= n) //X^T * X is singular otherwise
+            measure("BigDecimalMatrix.invert", n, n, 2d * n * n * n / 1e9, "GFLOP/s", () -> xtx.invert(dest));
+    }
+
+    private interface Op {
+        Object run();
+    }
+
+    /**
+     * Runs the benchmark {@code name} and prints its time per operation and its throughput in {@code unit}, given
+     * that every operation does {@code work} units of work.
+     */
+    private static void measure(String name, int m, int n, double work, String unit, Op op) {
+        double[] nanos = new double[iterations];
+        for (int i = -warmups; i < iterations; ++i) {
+            long ops = 0, start = System.nanoTime(), elapsed;
+            do {
+                sink += System.identityHashCode(op.run());
+                ++ops;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < timeNanos);
+            if (i >= 0)
+                nanos[i] = (double) elapsed / ops;
+        }
+        double mean = 0d, var = 0d;
+        for (double t : nanos)
+            mean += t;
+        mean /= iterations;
+        for (double t : nanos)
+            var += (t - mean) * (t - mean);
+        double sd = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0d;
+        System.out.printf("%-28s %-14s %16.1f %12.1f %9.2f %s%n", name, m + "x" + n, mean, sd, work / (mean * 1e-9), unit);
+    }
+
+    private static Matrix random(int m, int n, long seed) {
+        Random random = new Random(seed);
+        double[] data = new double[m * n];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = random.nextGaussian();
+        return new Matrix(m, n, data);
+    }
+
+    private static File temp() {
+        try {
+            File file = File.createTempFile("bench", ".csv");
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,903 @@
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ *     Verifies the hand-written numerics against reference implementations and prints a summary per check.
+ * </p>
+ * <p>
+ *     The suite {@code parallel} checks that the parallel overloads of {@link Matrix} give the same bits for any
+ *     pool size, and for {@code mul} and {@code transpose} the same bits as the sequential ones.
+ * </p>
+ * <p>
+ *     The suite {@code cholesky} checks the factor and the solutions of {@link Cholesky} on random
+ *     positive-definite systems and that indefinite matrices are rejected.
+ * </p>
+ * <p>
+ *     The suite {@code qr} checks R^T * R against A^T * A and that the least-squares solutions of {@link QR}
+ *     solve the normal equations, across several panels, and that rank-deficient matrices are rejected.
+ * </p>
+ * <p>
+ *     The suite {@code parse} fuzzes {@link CSVReader#parseDouble} against {@link Double#parseDouble(String)} with
+ *     random doubles, random decimal strings, exact halfway points between adjacent doubles, subnormals, mantissas
+ *     of 19 and more digits, exponents that over- or underflow and signed zeros.
+ * </p>
+ * <p>
+ *     The suite {@code write} writes random and edge-case doubles with {@link CSVWriter#nextDouble(double)} and
+ *     checks that every output parses back to the same bits and matches {@link Double#toString(double)}. Before
+ *     JDK 19, whose {@code Double.toString} is not always the shortest decimal (JDK-4511638), a different output
+ *     only has to be no longer.
+ * </p>
+ * <p>
+ *     The suite {@code bigdecimal} checks that the parallel overloads of {@link BigDecimalMatrix} give exactly the
+ *     results of the sequential ones.
+ * </p>
+ * <p>
+ *     The suite {@code lu} checks P * A = L * U for {@link LU}, its solutions against {@link QR} and
+ *     {@link Cholesky}, its determinant against {@link QR}, its condition estimate and {@link Matrix#invert()}
+ *     against the explicit inverse, and that singular matrices are detected.
+ * </p>
+ * <p>
+ *     The suite {@code sparse} checks every operation of {@link SparseMatrix}, with dense and sparse operands and
+ *     with {@code dest} aliasing {@code other}, against the dense {@link Matrix} results, and
+ *     {@link CSVReader#nextSparse(int)} against {@link CSVReader#readColumnMajor} and on malformed records.
+ * </p>
+ * <p>
+ *     The suite {@code ridge} checks the solutions of {@link Ridge} for lambda 0 against {@link QR}, for a
+ *     positive lambda and along {@link Ridge#path} against {@link Cholesky} of X^T * X + lambda * I, and its
+ *     degrees of freedom against the trace of X^T * X * (X^T * X + lambda * I)^-1, also with collinear features.
+ * </p>
+ * <p>
+ *     The suite {@code iterative} checks {@link IterativeSolver#conjugateGradient} against {@link QR} and
+ *     {@link IterativeSolver#sgd} on data with an exact fit, from zero, warm-started at the solution and with the
+ *     solution zero.
+ * </p>
+ * <p>
+ *     The suite {@code cv} checks the errors and weights of {@link CrossValidation} per fold against
+ *     {@link QR} refits on the rows outside the fold, its ridge weights against {@link Cholesky}, and that
+ *     {@link CrossValidation#read} of the rows written to a file gives the same errors as adding them.
+ * </p>
+ * <p>
+ *     Usage: {@code java Check [-count N] [-seed S] [suite ...]}, all suites by default. The exit status is 1 if
+ *     any check fails.
+ * </p>
+ */
+public class Check {
+    private static final String[] SUITES = {"parallel", "cholesky", "qr", "parse", "write", "bigdecimal", "lu",
+            "sparse", "ridge",
+            "iterative", "cv"};
+    private static final int TRIALS = 50; //Random systems per solver check
+    private static final int MAX_REPORTS = 10; //Failures printed per check
+    private static int count = 1_000_000;
+    private static long seed = 42L;
+    private static int failed = 0;
+
+    public static void main(String[] args) {
+        List<String> suites = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-count": count = Integer.parseInt(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                default: suites.add(args[i]);
+            }
+        }
+        if (suites.isEmpty())
+            suites.addAll(List.of(SUITES));
+        System.out.println("Java " + System.getProperty("java.version") + ", " + count + " random cases, seed " + seed);
+        for (String suite : suites) {
+            switch (suite) {
+                case "parallel": parallel(); break;
+                case "cholesky": cholesky(); break;
+                case "qr": qr(); break;
+                case "parse": parse(); break;
+                case "write": write(); break;
+                case "bigdecimal": bigDecimal(); break;
+                case "lu": lu(); break;
+                case "sparse": sparse(); break;
+                case "ridge": ridge(); break;
+                case "iterative": iterative(); break;
+                case "cv": crossValidation(); break;
+                default: throw new RuntimeException("Unknown suite " + suite);
+            }
+        }
+        System.out.println(failed == 0 ? "All checks passed" : failed + " checks failed");
+        if (failed != 0)
+            System.exit(1);
+    }
+
+    /**
+     * Counts the failures of one check and prints the first of them.
+     */
+    private static final class Result {
+        private final String name;
+        private long cases = 0;
+        private long failures = 0;
+
+        private Result(String name) {
+            this.name = name;
+        }
+
+        private void check(boolean ok, String message) {
+            ++this.cases;
+            if (!ok && ++this.failures <= MAX_REPORTS)
+                System.out.println("  " + this.name + ": " + message);
+        }
+
+        private void report() {
+            System.out.printf("%-40s %10d cases %8d failures%n", this.name, this.cases, this.failures);
+            if (this.failures != 0)
+                ++failed;
+        }
+    }
+
+    private static void parallel() {
+        Random random = new Random(seed);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Result sizes = new Result("Matrix pool sizes 1 vs 4");
+        Result serial = new Result("Matrix pool vs serial");
+        int n, m;
+        Matrix a, b, c, dest;
+        try {
+            for (int t = 0; t < TRIALS / 10; ++t) {
+                n = 1 + random.nextInt(30);
+                m = 1000 + random.nextInt(20000);
+                a = random(random, m, n);
+                b = random(random, m, 2);
+                c = random(random, n, 3);
+                dest = a.gram(new Matrix(n, n), pool);
+                sizes.check(Arrays.equals(a.gram(new Matrix(n, n), single).data(), dest.data()),
+                        "gram, " + m + " x " + n);
+                serial.check(difference(a.gram(new Matrix(n, n)), dest) <= 1e-12, "gram, " + m + " x " + n);
+                dest = a.transposeMul(b, new Matrix(n, 2), pool);
+                sizes.check(Arrays.equals(a.transposeMul(b, new Matrix(n, 2), single).data(), dest.data()),
+                        "transposeMul, " + m + " x " + n);
+                serial.check(difference(a.transposeMul(b, new Matrix(n, 2)), dest) <= 1e-12,
+                        "transposeMul, " + m + " x " + n);
+                serial.check(Arrays.equals(a.mul(c, new Matrix(m, 3)).data(),
+                        a.mul(c, new Matrix(m, 3), pool).data()), "mul, " + m + " x " + n);
+                serial.check(Arrays.equals(a.transpose(new Matrix(n, m)).data(),
+                        a.transpose(new Matrix(n, m), pool).data()), "transpose, " + m + " x " + n);
+            }
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+        sizes.report();
+        serial.report();
+    }
+
+    private static void cholesky() {
+        Random random = new Random(seed);
+        Result factor = new Result("Cholesky L * L^T vs A");
+        Result solve = new Result("Cholesky residuals");
+        Result indefinite = new Result("Cholesky of indefinite matrices");
+        int n;
+        Matrix s, l, b, x;
+        for (int t = 0; t < TRIALS; ++t) {
+            n = 1 + random.nextInt(40);
+            s = spd(random, n);
+            l = new Cholesky(s).getL(new Matrix(n, n));
+            factor.check(difference(l.mul(l.transpose(new Matrix(n, n)), new Matrix(n, n)), s) <= 1e-13, "n " + n);
+            b = random(random, n, 2);
+            x = s.solveSPD(b, new Matrix(n, 2));
+            solve.check(difference(s.mul(x, new Matrix(n, 2)), b) <= 1e-12, "n " + n);
+            s.data()[random.nextInt(n) * (n + 1)] = -1d; //e_i^T * A * e_i < 0
+            try {
+                new Cholesky(s);
+                indefinite.check(false, "n " + n);
+            } catch (RuntimeException e) {
+                indefinite.check(true, null);
+            }
+        }
+        factor.report();
+        solve.report();
+        indefinite.report();
+    }
+
+    private static void qr() {
+        Random random = new Random(seed);
+        Result factor = new Result("QR R^T * R vs A^T * A");
+        Result normal = new Result("QR least squares vs normal equations");
+        Result inPlace = new Result("QR in place vs copy");
+        Result deficient = new Result("QR of rank-deficient matrices");
+        int n, m;
+        Matrix a, r, y, w, gram;
+        for (int t = 0; t < TRIALS; ++t) {
+            n = 1 + random.nextInt(80); //Up to three panels
+            m = n + random.nextInt(100);
+            a = random(random, m, n);
+            y = random(random, m, 2);
+            gram = a.gram(new Matrix(n, n));
+            r = new QR(a).getR(new Matrix(n, n));
+            factor.check(difference(r.transposeMul(r, new Matrix(n, n)), gram) <= 1e-13, m + " x " + n);
+            w = new QR(a).solve(y, new Matrix(n, 2));
+            normal.check(difference(gram.mul(w, new Matrix(n, 2)), a.transposeMul(y, new Matrix(n, 2))) <= 1e-10,
+                    m + " x " + n);
+            w = new QR(new Matrix(m, n, a.data().clone()), true).solve(y, new Matrix(n, 2));
+            inPlace.check(Arrays.equals(w.data(), a.leastSquares(y).data()), m + " x " + n);
+            if (n > 1) {
+                System.arraycopy(a.data(), 0, a.data(), (n - 1) * m, m); //The last column repeats the first
+                try {
+                    new QR(a).solve(y, new Matrix(n, 2));
+                    deficient.check(false, m + " x " + n);
+                } catch (RuntimeException e) {
+                    deficient.check(true, null);
+                }
+            }
+        }
+        factor.report();
+        normal.report();
+        inPlace.report();
+        deficient.report();
+    }
+
+    private static void parse() {
+        Random random = new Random(seed);
+        Result edges = new Result("parseDouble edge cases");
+        String[] fixed = {"0", "-0", "0.0", "-0.0", "0e0", "-0e-5", "00000.00000", "1", "-1", "1.5", "123456789",
+                "9007199254740993", "9007199254740992.5", "1e22", "1e23", "1.7976931348623157e308",
+                "1.7976931348623158e308", "1.7976931348623159e308", "1e309", "-1e309", "1e100000", "1e-400",
+                "-1e-400", "1e-100000", "4.9e-324", "2.4703282292062328e-324", "2.4703282292062327e-324",
+                "2.2250738585072011e-308", "2.2250738585072012e-308", "2.2250738585072014e-308",
+                "1234567890123456789", "12345678901234567890", "1234567890123456789012345678901234567890",
+                "0.000000000000000000000000000001234567890123456789", "7.2057594037927933e16",
+                "1.00000000000000011102230246251565404236316680908203125",
+                "1.00000000000000011102230246251565404236316680908203124",
+                "1.00000000000000011102230246251565404236316680908203126", "NaN", "Infinity", "-Infinity", "1E5",
+                "1.e5", ".5", "5."};
+        for (String s : fixed)
+            compareParse(edges, s);
+        edges.report();
+        Result doubles = new Result("parseDouble of Double.toString");
+        Result decimals = new Result("parseDouble of random decimals");
+        Result halfway = new Result("parseDouble of halfway points");
+        Result subnormals = new Result("parseDouble of subnormals");
+        Result longDigits = new Result("parseDouble of 19 to 40 digits");
+        double v;
+        for (int i = 0; i < count; ++i) {
+            v = Double.longBitsToDouble(random.nextLong());
+            compareParse(doubles, Double.toString(v));
+            compareParse(decimals, randomDecimal(random));
+            v = Math.abs(v);
+            if (Double.isFinite(v) && v != Double.MAX_VALUE && i % 8 == 0) { //Exact, up to 767 digits
+                BigDecimal mid = new BigDecimal(v).add(new BigDecimal(Math.nextUp(v))).divide(BigDecimal.valueOf(2));
+                compareParse(halfway, mid.toString());
+                compareParse(halfway, mid.round(new MathContext(17 + random.nextInt(10))).toString());
+                compareParse(halfway, mid.toString() + "1"); //Above the halfway point, if mid has a fraction
+            }
+            v = Double.longBitsToDouble(random.nextLong() & ((1L << 52) - 1)); //Subnormal or zero
+            compareParse(subnormals, (random.nextBoolean() ? "-" : "") + v);
+            if (i % 8 == 0)
+                compareParse(subnormals, new BigDecimal(v).toString());
+            v = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+            if (Double.isFinite(v))
+                compareParse(longDigits, new BigDecimal(v).round(new MathContext(19 + random.nextInt(22))).toString());
+        }
+        doubles.report();
+        decimals.report();
+        halfway.report();
+        subnormals.report();
+        longDigits.report();
+    }
+
+    /**
+     * Creates a random decimal with up to 30 digits, a random decimal point and a random exponent that may over-
+     * or underflow.
+     */
+    private static String randomDecimal(Random random) {
+        StringBuilder s = new StringBuilder();
+        if (random.nextBoolean())
+            s.append('-');
+        int digits = 1 + random.nextInt(30), point = random.nextInt(digits + 1);
+        for (int d = 0; d < digits; ++d) {
+            if (d == point && d > 0)
+                s.append('.');
+            s.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(4) != 0)
+            s.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(700) - 350);
+        return s.toString();
+    }
+
+    private static void compareParse(Result result, String s) {
+        byte[] b = s.getBytes();
+        long expected = Double.doubleToRawLongBits(Double.parseDouble(s));
+        long actual = Double.doubleToRawLongBits(CSVReader.parseDouble(b, 0, b.length));
+        result.check(expected == actual, s + " parsed to " + Double.longBitsToDouble(actual) + " instead of "
+                + Double.longBitsToDouble(expected));
+    }
+
+    private static void write() {
+        Random random = new Random(seed);
+        List<Double> values = new ArrayList<>(List.of(0d, -0d, Double.MIN_VALUE, -Double.MIN_VALUE,
+                Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL), Double.MAX_VALUE, -Double.MAX_VALUE, 1d, -1d,
+                0.1, 0.2, 0.3, 1e-3, Math.nextDown(1e-3), 1e7, Math.nextDown(1e7), 1e22, 1e23, 2e-323,
+                9007199254740993d, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY));
+        for (int e = -324; e <= 308; ++e)
+            values.add(Double.parseDouble("1e" + e));
+        for (int i = 0; i < count; ++i) {
+            values.add(Double.longBitsToDouble(random.nextLong())); //All exponents, including subnormals
+            values.add(Math.round(random.nextGaussian() * 1e6) / 1e4); //Short decimals like in the data
+        }
+        List<String> lines;
+        try {
+            File file = File.createTempFile("check", ".csv");
+            file.deleteOnExit();
+            CSVWriter wtr = new CSVWriter(file.getPath());
+            wtr.nextValues("v");
+            for (double v : values) {
+                wtr.nextRecord();
+                wtr.nextDouble(v);
+            }
+            wtr.close();
+            lines = Files.readAllLines(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Result roundTrip = new Result("nextDouble round trip");
+        Result format = new Result("nextDouble vs Double.toString");
+        boolean shortest = Runtime.version().feature() >= 19;
+        long differences = 0;
+        String line, reference;
+        double v;
+        for (int i = 0; i < values.size(); ++i) {
+            v = values.get(i);
+            line = lines.get(i + 1);
+            reference = Double.toString(v);
+            roundTrip.check(Double.doubleToLongBits(Double.parseDouble(line)) == Double.doubleToLongBits(v),
+                    line + " does not parse back to " + reference);
+            if (!line.equals(reference)) {
+                ++differences;
+                format.check(!shortest && line.length() <= reference.length(), line + " instead of " + reference);
+            } else {
+                format.check(true, null);
+            }
+        }
+        roundTrip.report();
+        format.report();
+        if (differences != 0 && !shortest)
+            System.out.println("  " + differences + " outputs are shorter than the (not shortest) JDK "
+                    + Runtime.version().feature() + " Double.toString");
+    }
+
+    private static void bigDecimal() {
+        Random random = new Random(seed);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Result decimal = new Result("BigDecimalMatrix pool vs serial");
+        int n;
+        BigDecimalMatrix p, q;
+        try {
+            for (int t = 0; t < TRIALS / 10; ++t) {
+                n = 1 + random.nextInt(24);
+                p = decimalMatrix(random, n);
+                q = decimalMatrix(random, n);
+                decimal.check(p.mul(q, new BigDecimalMatrix(n, n, MathContext.DECIMAL128)).toString()
+                        .equals(p.mul(q, new BigDecimalMatrix(n, n, MathContext.DECIMAL128), pool).toString()),
+                        "mul, n " + n);
+                decimal.check(p.transpose(new BigDecimalMatrix(n, n, MathContext.DECIMAL128)).toString()
+                        .equals(p.transpose(new BigDecimalMatrix(n, n, MathContext.DECIMAL128), pool).toString()),
+                        "transpose, n " + n);
+                decimal.check(p.invert(new BigDecimalMatrix(n, n, MathContext.DECIMAL128)).toString()
+                        .equals(p.invert(new BigDecimalMatrix(n, n, MathContext.DECIMAL128), pool).toString()),
+                        "invert, n " + n);
+            }
+            decimal.check(new BigDecimalMatrix(0, 0).invert(new BigDecimalMatrix(0, 0), pool).toString().isEmpty(),
+                    "invert, n 0");
+        } finally {
+            pool.shutdown();
+        }
+        decimal.report();
+    }
+
+    private static void lu() {
+        Random random = new Random(seed);
+        Result factor = new Result("LU P * A vs L * U");
+        Result spd = new Result("LU, QR and Cholesky on SPD systems");
+        Result general = new Result("LU vs QR on general systems");
+        Result determinant = new Result("LU determinant vs QR");
+        Result rcond = new Result("LU rcond vs explicit inverse");
+        Result inverse = new Result("Matrix.invert residuals");
+        Result singular = new Result("LU of singular matrices");
+        int n;
+        int[] pivot;
+        Matrix a, s, b, l, u, pa, inv, expected;
+        LU lu;
+        double estimate, exact, product;
+        double[] r;
+        for (int t = 0; t < TRIALS; ++t) {
+            n = 1 + random.nextInt(40);
+            s = spd(random, n);
+            b = random(random, n, 2);
+            expected = new QR(s).solve(b, new Matrix(n, 2));
+            spd.check(difference(new LU(s).solve(b, new Matrix(n, 2)), expected) <= 1e-10, "LU, n " + n);
+            spd.check(difference(new Cholesky(s).solve(b, new Matrix(n, 2)), expected) <= 1e-10, "Cholesky, n " + n);
+            a = random(random, n, n);
+            lu = new LU(a);
+            pivot = lu.getPivot();
+            pa = new Matrix(n, n);
+            for (int j = 0; j < n; ++j)
+                for (int i = 0; i < n; ++i)
+                    pa.data()[i + j * n] = a.data()[pivot[i] + j * n];
+            l = lu.getL(new Matrix(n, n));
+            u = lu.getU(new Matrix(n, n));
+            factor.check(difference(l.mul(u, new Matrix(n, n)), pa) <= 1e-14 * n, "n " + n);
+            estimate = lu.rcond();
+            expected = new QR(a).solve(b, new Matrix(n, 2));
+            general.check(difference(lu.solve(b, new Matrix(n, 2)), expected) <= 1e-12 / estimate,
+                    "n " + n + ", rcond " + estimate);
+            product = 1d;
+            r = new QR(a).getR(new Matrix(n, n)).data();
+            for (int j = 0; j < n; ++j)
+                product *= r[j * (n + 1)];
+            determinant.check(Math.abs(Math.abs(lu.determinant()) - Math.abs(product)) <= 1e-10 * Math.abs(product),
+                    lu.determinant() + " instead of +-" + product + ", n " + n);
+            inv = a.invert(new Matrix(n, n));
+            exact = 1d / (norm1(a) * norm1(inv));
+            rcond.check(estimate >= exact * (1d - 1e-10) && estimate <= 10d * exact,
+                    estimate + " instead of " + exact + ", n " + n);
+            inverse.check(difference(a.mul(inv, new Matrix(n, n)), new Matrix(n, n).identity()) <= 1e-12 / estimate,
+                    "n " + n + ", rcond " + estimate);
+            if (n > 1) {
+                System.arraycopy(a.data(), 0, a.data(), (n - 1) * n, n); //The last column repeats the first
+                lu = new LU(a);
+                singular.check(lu.isSingular() && lu.rcond() == 0d, "n " + n);
+            }
+        }
+        factor.report();
+        spd.report();
+        general.report();
+        determinant.report();
+        rcond.report();
+        inverse.report();
+        singular.report();
+    }
+
+    private static void sparse() {
+        Random random = new Random(seed);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Result structure = new Result("Sparse toDense, transpose and columns");
+        Result products = new Result("Sparse products vs dense");
+        Result aliased = new Result("Sparse products into other");
+        Result dots = new Result("Sparse dot products vs dense");
+        Result reader = new Result("nextSparse vs readColumnMajor");
+        Result malformed = new Result("nextSparse of malformed records");
+        int m, n, from, to;
+        Matrix a, c, b, y, dest;
+        SparseMatrix sa, sc;
+        String size;
+        try {
+            for (int t = 0; t < TRIALS; ++t) {
+                m = 1 + random.nextInt(60);
+                n = t % 5 == 0 ? m : 1 + random.nextInt(30); //Square ones for the aliasing
+                size = m + " x " + n;
+                a = sparse(random, m, n);
+                c = sparse(random, m, 1 + random.nextInt(5));
+                sa = SparseMatrix.fromDense(a);
+                sc = SparseMatrix.fromDense(c);
+                structure.check(Arrays.equals(sa.toDense(new Matrix(m, n)).data(), a.data()), "toDense, " + size);
+                structure.check(Arrays.equals(sa.transpose().toDense(new Matrix(n, m)).data(),
+                        a.transpose(new Matrix(n, m)).data()), "transpose, " + size);
+                from = random.nextInt(n + 1);
+                to = from + random.nextInt(n - from + 1);
+                structure.check(Arrays.equals(sa.columns(from, to).toDense(new Matrix(m, to - from)).data(),
+                        Arrays.copyOfRange(a.data(), from * m, to * m)), "columns " + from + " to " + to + ", " + size);
+                b = random(random, n, 3);
+                y = random(random, m, 2);
+                products.check(difference(sa.mul(b, new Matrix(m, 3)), a.mul(b, new Matrix(m, 3))) <= 1e-14,
+                        "mul, " + size);
+                products.check(difference(sa.transposeMul(y, new Matrix(n, 2)), a.transposeMul(y, new Matrix(n, 2)))
+                        <= 1e-14, "transposeMul, " + size);
+                products.check(difference(sa.transposeMul(sc, new Matrix(n, c.columns())),
+                        a.transposeMul(c, new Matrix(n, c.columns()))) <= 1e-14, "sparse transposeMul, " + size);
+                products.check(difference(sa.transposeMul(sa, new Matrix(n, n)), a.gram(new Matrix(n, n))) <= 1e-14,
+                        "transposeMul with itself, " + size);
+                products.check(difference(sa.gram(new Matrix(n, n)), a.gram(new Matrix(n, n))) <= 1e-14,
+                        "gram, " + size);
+                dest = new Matrix(n, 2);
+                products.check(difference(sa.gram(new Matrix(n, n), y, dest), a.gram(new Matrix(n, n))) <= 1e-14
+                        && difference(dest, a.transposeMul(y, new Matrix(n, 2))) <= 1e-14, "gram with y, " + size);
+                if (m == n) {
+                    dest = random(random, n, 3);
+                    b = a.mul(dest, new Matrix(m, 3));
+                    aliased.check(difference(sa.mul(dest, dest), b) <= 1e-14, "mul, " + size);
+                    b = a.transposeMul(dest, new Matrix(n, 3));
+                    aliased.check(difference(sa.transposeMul(dest, dest), b) <= 1e-14, "transposeMul, " + size);
+                }
+                b = random(random, m, n);
+                dots.check(Math.abs(sa.dot(b) - a.dot(b)) <= 1e-13 * Math.max(1d, Math.abs(a.dot(b))),
+                        "dense, " + size);
+                b = sparse(random, m, n);
+                dots.check(Math.abs(sa.dot(SparseMatrix.fromDense(b)) - a.dot(b))
+                        <= 1e-13 * Math.max(1d, Math.abs(a.dot(b))), "sparse, " + size);
+                String path = writeCsv(a, null);
+                CSVReader rdr = new CSVReader(path);
+                rdr.nextLine(); //Skip the column headers
+                sa = rdr.nextSparse(n);
+                rdr.close();
+                reader.check(Arrays.equals(sa.toDense(new Matrix(m, n)).data(),
+                        CSVReader.readColumnMajor(path, 1, pool, n)[0].data()), size);
+                if (n > 1) {
+                    path = writeCsv(a, random.nextInt(m)); //One record loses its last value
+                    rdr = new CSVReader(path);
+                    rdr.nextLine();
+                    try {
+                        rdr.nextSparse(n);
+                        malformed.check(false, size);
+                    } catch (RuntimeException e) {
+                        malformed.check(true, null);
+                    } finally {
+                        rdr.close();
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        structure.report();
+        products.report();
+        aliased.report();
+        dots.report();
+        reader.report();
+        malformed.report();
+    }
+
+    /**
+     * Writes the rows of {@code a} to a temporary .csv file with column headers, leaving out the last value of
+     * the row {@code shortRow} unless it is {@code null}.
+     */
+    private static String writeCsv(Matrix a, Integer shortRow) {
+        int m = a.rows(), n = a.columns();
+        double[] data = a.data();
+        String[] header = new String[n];
+        for (int j = 0; j < n; ++j)
+            header[j] = "x" + (j + 1);
+        try {
+            File file = File.createTempFile("check", ".csv");
+            file.deleteOnExit();
+            CSVWriter wtr = new CSVWriter(file.getPath());
+            wtr.nextValues(header);
+            for (int i = 0; i < m; ++i) {
+                wtr.nextRecord();
+                for (int j = 0; j < (shortRow != null && shortRow == i ? n - 1 : n); ++j)
+                    wtr.nextDouble(data[i + j * m]);
+            }
+            wtr.close();
+            return file.getPath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates an M x N matrix of standard normal values of which a random fraction is zero.
+     */
+    private static Matrix sparse(Random random, int m, int n) {
+        double density = random.nextDouble();
+        double[] data = new double[m * n];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = random.nextDouble() < density ? random.nextGaussian() : 0d;
+        return new Matrix(m, n, data);
+    }
+
+    /**
+     * Creates an M x N matrix of standard normal values.
+     */
+    private static Matrix random(Random random, int m, int n) {
+        double[] data = new double[m * n];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = random.nextGaussian();
+        return new Matrix(m, n, data);
+    }
+
+    /**
+     * Creates an N x N matrix of random values with two decimal places, rounded to 34 digits in operations.
+     */
+    private static BigDecimalMatrix decimalMatrix(Random random, int n) {
+        BigDecimal[] data = new BigDecimal[n * n];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = BigDecimal.valueOf(random.nextInt(20001) - 10000, 2);
+        return new BigDecimalMatrix(n, n, data, MathContext.DECIMAL128);
+    }
+
+    private static void ridge() {
+        Random random = new Random(seed);
+        Result ols = new Result("Ridge with lambda 0 vs QR");
+        Result regularized = new Result("Ridge with lambda > 0 vs Cholesky");
+        Result path = new Result("Ridge path vs solve");
+        Result freedom = new Result("Ridge degrees of freedom vs trace");
+        Result deficient = new Result("Ridge with collinear features");
+        int n, m;
+        Matrix a, b, gram, expected;
+        Matrix[] weights;
+        Ridge ridge;
+        double lambda;
+        double[] lambdas;
+        for (int t = 0; t < TRIALS; ++t) {
+            n = 1 + random.nextInt(40);
+            m = n + 20;
+            a = random(random, m, n);
+            b = random(random, m, 2);
+            ridge = Ridge.fit(a, b);
+            ols.check(difference(ridge.solve(0d, new Matrix(n, 2)), new QR(a).solve(b, new Matrix(n, 2))) <= 1e-10,
+                    "n " + n);
+            freedom.check(Math.abs(ridge.degreesOfFreedom(0d) - n) <= 1e-10 * n,
+                    ridge.degreesOfFreedom(0d) + " instead of " + n + ", lambda 0");
+            gram = a.gram(new Matrix(n, n));
+            lambdas = new double[]{0d, 1e-3 * m * random.nextDouble(), m * random.nextDouble(), 100d * m};
+            weights = ridge.path(lambdas);
+            for (int l = 0; l < lambdas.length; ++l) {
+                lambda = lambdas[l];
+                path.check(Arrays.equals(weights[l].data(), ridge.solve(lambda, new Matrix(n, 2)).data()),
+                        "n " + n + ", lambda " + lambda);
+                if (lambda == 0d)
+                    continue;
+                regularized.check(difference(weights[l], ridgeCholesky(a, b, lambda)) <= 1e-10,
+                        "n " + n + ", lambda " + lambda);
+                expected = new Cholesky(shift(gram, lambda)).solve(gram, new Matrix(n, n));
+                freedom.check(Math.abs(ridge.degreesOfFreedom(lambda) - trace(expected)) <= 1e-10 * n,
+                        ridge.degreesOfFreedom(lambda) + " instead of " + trace(expected) + ", lambda " + lambda);
+            }
+            if (n > 1) {
+                for (int i = 0; i < m; ++i) //The last column is twice the first
+                    a.data()[i + (n - 1) * m] = 2d * a.data()[i];
+                ridge = Ridge.fit(a, b);
+                deficient.check(Math.abs(ridge.degreesOfFreedom(0d) - (n - 1)) <= 1e-10 * n,
+                        ridge.degreesOfFreedom(0d) + " instead of " + (n - 1) + ", lambda 0");
+                lambda = 1e-6 + random.nextDouble();
+                deficient.check(difference(ridge.solve(lambda, new Matrix(n, 2)), ridgeCholesky(a, b, lambda)) <= 1e-8,
+                        "n " + n + ", lambda " + lambda);
+                try {
+                    ridge.solve(0d, new Matrix(n, 2));
+                    deficient.check(false, "Lambda 0 is not singular, n " + n);
+                } catch (RuntimeException e) {
+                    deficient.check(true, null);
+                }
+            }
+        }
+        ols.report();
+        regularized.report();
+        path.report();
+        freedom.report();
+        deficient.report();
+    }
+
+    private static void iterative() {
+        Random random = new Random(seed);
+        Result cg = new Result("Conjugate gradient vs QR");
+        Result sgd = new Result("SGD from zero vs exact fit");
+        Result warm = new Result("SGD warm-started at exact fit");
+        Result zero = new Result("SGD with zero solution");
+        int n, m;
+        Matrix a, b, w, expected;
+        IterativeSolver solver;
+        double rate, norm;
+        for (int t = 0; t < TRIALS / 10; ++t) {
+            n = 1 + random.nextInt(20);
+            m = n + random.nextInt(500);
+            a = random(random, m, n);
+            b = random(random, m, 1);
+            String path = writeTrain(a, b);
+            solver = new IterativeSolver(n, 1 + random.nextInt(64)).setTolerance(1e-12);
+            w = solver.conjugateGradient(() -> train(path), new Matrix(n, 1));
+            cg.check(difference(w, new QR(a).solve(b, new Matrix(n, 1))) <= 1e-8,
+                    m + " x " + n + ", " + solver.getIterations() + " iterations");
+        }
+        for (int t = 0; t < TRIALS / 10; ++t) {
+            n = 1 + random.nextInt(20);
+            m = 10 * n + 100 + random.nextInt(300); //Well-conditioned, so that SGD converges in few epochs
+            a = random(random, m, n);
+            expected = random(random, n, 1);
+            b = a.mul(expected, new Matrix(m, 1)); //y = X * w has the exact fit w
+            String path = writeTrain(a, b);
+            rate = 0d;
+            for (int i = 0; i < m; ++i) { //No step of the largest row norm overshoots
+                norm = 0d;
+                for (int j = 0; j < n; ++j)
+                    norm += a.data()[i + j * m] * a.data()[i + j * m];
+                rate = Math.max(rate, norm);
+            }
+            rate = 1d / rate;
+            solver = new IterativeSolver(n, 1 + random.nextInt(8)).setTolerance(1e-13).setMaxIterations(10000);
+            w = solver.sgd(() -> train(path), rate, new Matrix(n, 1));
+            sgd.check(difference(w, expected) <= 1e-8,
+                    m + " x " + n + ", " + solver.getIterations() + " epochs, change " + solver.getResidual());
+            w = solver.sgd(() -> train(path), rate, new Matrix(n, 1, expected.data().clone()));
+            warm.check(difference(w, expected) <= 1e-12 && solver.getIterations() == 1,
+                    m + " x " + n + ", " + solver.getIterations() + " epochs, change " + solver.getResidual());
+            String zeros = writeTrain(a, new Matrix(m, 1));
+            w = solver.sgd(() -> train(zeros), rate, new Matrix(n, 1));
+            zero.check(Arrays.equals(w.data(), new double[n]) && solver.getIterations() == 1
+                    && solver.getResidual() == 0d, m + " x " + n + ", " + solver.getIterations() + " epochs");
+        }
+        cg.report();
+        sgd.report();
+        warm.report();
+        zero.report();
+    }
+
+    private static void crossValidation() {
+        Random random = new Random(seed);
+        Result rmse = new Result("Cross-validation errors vs refits");
+        Result weights = new Result("Cross-validation weights vs refits");
+        Result ridge = new Result("Cross-validation ridge vs Cholesky");
+        Result read = new Result("Cross-validation read vs add");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int n, k, m, batch, held, index;
+        Matrix a, b, w, train, target;
+        double[] x, y, row, errors;
+        double sse, expected, e, lambda;
+        try {
+            for (int t = 0; t < TRIALS / 5; ++t) {
+                n = 1 + random.nextInt(8);
+                k = 2 + random.nextInt(6);
+                m = k * (n + 2) + random.nextInt(100); //Every training set has more rows than features
+                a = random(random, m, n);
+                b = random(random, m, 1);
+                x = a.data();
+                y = b.data();
+                row = new double[n];
+                batch = 1 + random.nextInt(32);
+                CrossValidation validation = new CrossValidation(n, k, batch);
+                for (int i = 0; i < m; ++i) {
+                    for (int j = 0; j < n; ++j)
+                        row[j] = x[i + j * m];
+                    validation.add(row, y[i]);
+                }
+                errors = validation.rmse(pool);
+                CrossValidation file = new CrossValidation(n, k, batch);
+                CSVReader rdr = train(writeTrain(a, b));
+                read.check(file.read(rdr) == m && Arrays.equals(file.rmse(pool), errors), "m " + m + ", k " + k);
+                rdr.close();
+                lambda = m * random.nextDouble();
+                for (int f = 0; f < k; ++f) { //Refit on the rows i with i mod K != f
+                    held = (m - f + k - 1) / k;
+                    train = new Matrix(m - held, n);
+                    target = new Matrix(m - held, 1);
+                    index = 0;
+                    for (int i = 0; i < m; ++i) {
+                        if (i % k == f)
+                            continue;
+                        for (int j = 0; j < n; ++j)
+                            train.data()[index + j * (m - held)] = x[i + j * m];
+                        target.data()[index++] = y[i];
+                    }
+                    w = new QR(train).solve(target, new Matrix(n, 1));
+                    sse = 0d;
+                    for (int i = f; i < m; i += k) {
+                        e = -y[i];
+                        for (int j = 0; j < n; ++j)
+                            e += x[i + j * m] * w.data()[j];
+                        sse += e * e;
+                    }
+                    expected = Math.sqrt(sse / held);
+                    rmse.check(Math.abs(errors[f] - expected) <= 1e-9 * expected,
+                            errors[f] + " instead of " + expected + ", fold " + f + " of " + k);
+                    weights.check(difference(validation.weights(f, 0d, new Matrix(n, 1)), w) <= 1e-9,
+                            "fold " + f + " of " + k);
+                    ridge.check(difference(validation.weights(f, lambda, new Matrix(n, 1)),
+                            ridgeCholesky(train, target, lambda)) <= 1e-10, "fold " + f + " of " + k + ", lambda " + lambda);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        rmse.report();
+        weights.report();
+        ridge.report();
+        read.report();
+    }
+
+    /**
+     * Solves (X^T * X + lambda * I) * W = X^T * Y with {@link Cholesky}.
+     */
+    private static Matrix ridgeCholesky(Matrix x, Matrix y, double lambda) {
+        int n = x.columns();
+        Matrix shifted = shift(x.gram(new Matrix(n, n)), lambda);
+        return new Cholesky(shifted).solve(x.transposeMul(y, new Matrix(n, y.columns())), new Matrix(n, y.columns()));
+    }
+
+    /**
+     * Creates a copy of the square matrix {@code a} with {@code lambda} added to the diagonal.
+     */
+    private static Matrix shift(Matrix a, double lambda) {
+        int n = a.rows();
+        Matrix shifted = new Matrix(n, n, a.data().clone());
+        for (int j = 0; j < n; ++j)
+            shifted.data()[j * (n + 1)] += lambda;
+        return shifted;
+    }
+
+    /**
+     * Computes the sum of the diagonal of the square matrix {@code a}.
+     */
+    private static double trace(Matrix a) {
+        double sum = 0d;
+        for (int j = 0; j < a.rows(); ++j)
+            sum += a.data()[j * (a.rows() + 1)];
+        return sum;
+    }
+
+    /**
+     * Writes the rows of {@code x} and {@code y} to a temporary file in the format of train.csv.
+     */
+    private static String writeTrain(Matrix x, Matrix y) {
+        int m = x.rows(), n = x.columns();
+        double[] xData = x.data(), yData = y.data();
+        String[] header = new String[n + 2];
+        header[0] = "Id";
+        header[1] = "y";
+        for (int j = 0; j < n; ++j)
+            header[j + 2] = "x" + (j + 1);
+        try {
+            File file = File.createTempFile("check", ".csv");
+            file.deleteOnExit();
+            CSVWriter wtr = new CSVWriter(file.getPath());
+            wtr.nextValues(header);
+            for (int i = 0; i < m; ++i) {
+                wtr.nextRecord();
+                wtr.nextInt(i);
+                wtr.nextDouble(yData[i]);
+                for (int j = 0; j < n; ++j)
+                    wtr.nextDouble(xData[i + j * m]);
+            }
+            wtr.close();
+            return file.getPath();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens a reader positioned at the first record of a file written by {@link #writeTrain}.
+     */
+    private static CSVReader train(String path) {
+        CSVReader rdr = new CSVReader(path);
+        rdr.nextLine(); //Skip the column headers
+        return rdr;
+    }
+
+    /**
+     * Creates the well-conditioned symmetric positive-definite N x N matrix A^T * A + I of a random A.
+     */
+    private static Matrix spd(Random random, int n) {
+        return random(random, n + 5, n).gram(new Matrix(n, n)).add(new Matrix(n, n).identity());
+    }
+
+    /**
+     * Computes the 1-norm, i.e. the largest absolute column sum.
+     */
+    private static double norm1(Matrix a) {
+        double[] data = a.data();
+        double norm = 0d, sum;
+        for (int j = 0; j < a.columns(); ++j) {
+            sum = 0d;
+            for (int i = 0; i < a.rows(); ++i)
+                sum += Math.abs(data[i + j * a.rows()]);
+            norm = Math.max(norm, sum);
+        }
+        return norm;
+    }
+
+    /**
+     * Computes the largest absolute difference of the elements relative to the largest absolute element of
+     * {@code expected}.
+     */
+    private static double difference(Matrix actual, Matrix expected) {
+        double[] a = actual.data(), e = expected.data();
+        double diff = 0d, max = Double.MIN_NORMAL;
+        for (int i = 0; i < e.length; ++i) {
+            diff = Math.max(diff, Math.abs(a[i] - e[i]));
+            max = Math.max(max, Math.abs(e[i]));
+        }
+        return Double.isNaN(diff) ? Double.POSITIVE_INFINITY : diff / max;
+    }
+}
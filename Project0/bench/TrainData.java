@@ -0,0 +1,60 @@
+import java.util.Random;
+
+/**
+ * <p>
+ *     Generates synthetic data in the schema of train.csv: a header {@code Id,y,x1,...,xN} followed by one record
+ *     per sample of its id, y and the N feature values.
+ * </p>
+ * <p>
+ *     The features are normally distributed with a standard deviation of 500 and y is their average, as in the
+ *     original data, so the least-squares weights are all 1 / N. The same seed always yields the same file.
+ * </p>
+ * <p>
+ *     Usage: {@code java TrainData <path> <rows> <features> [seed]}
+ * </p>
+ */
+public class TrainData {
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java TrainData <path> <rows> <features> [seed]");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        write(args[0], Long.parseLong(args[1]), Integer.parseInt(args[2]), args.length > 3 ? Long.parseLong(args[3]) : 42L);
+        System.out.println("Generating: " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Writes {@code rows} synthetic samples with {@code n} features to the file {@code path}.
+     * @param path The file name
+     * @param rows The number of samples
+     * @param n The number of features
+     * @param seed The seed of the random values
+     */
+    public static void write(String path, long rows, int n, long seed) {
+        Random random = new Random(seed);
+        String[] header = new String[n + 2];
+        header[0] = "Id";
+        header[1] = "y";
+        for (int j = 0; j < n; ++j)
+            header[j + 2] = "x" + (j + 1);
+        double[] x = new double[n];
+        double acc;
+        CSVWriter wtr = new CSVWriter(path);
+        wtr.nextValues(header); //Write the column names
+        wtr.nextRecord();
+        for (long i = 0; i < rows; ++i) {
+            acc = 0d;
+            for (int j = 0; j < n; ++j) {
+                x[j] = 500d * random.nextGaussian();
+                acc += x[j];
+            }
+            wtr.nextInt((int) i); //Write the id
+            wtr.nextDouble(acc / n); //Write the average
+            for (int j = 0; j < n; ++j)
+                wtr.nextDouble(x[j]);
+            wtr.nextRecord();
+        }
+        wtr.close();
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ *     Generates the primitive matrix types from PrimitiveMatrix.java.template, so their kernels stay in sync.
+ * </p>
+ * <p>
+ *     Every {@code $Key$} of the template is replaced by the value for the type. The generated sources are
+ *     committed; edit the template and rerun this program instead of editing them.
+ * </p>
+ * <p>
+ *     Usage, from the repository root: {@code java Project0/gen/Generate.java [templateDir] [outputDir]}
+ * </p>
+ */
+public class Generate {
+    private static final String[] KEYS = {"Type", "prim", "Box", "format", "narrow", "narrowing", "purpose"};
+    private static final String[][] TYPES = {
+            {"Float", "float", "Float", "% 6.3e", "return (float) value;",
+                    "rounded to the nearest {@code float}",
+                    "for memory-bound workloads at half the memory and bandwidth of {@link Matrix}."},
+            {"Int", "int", "Integer", "%d", "return (int) Math.rint(value);",
+                    "rounded to the nearest integer and saturated at the bounds of {@code int}",
+                    "e.g. for counts and one-hot encoded categorical features."},
+            {"Long", "long", "Long", "%d", "return (long) Math.rint(value);",
+                    "rounded to the nearest integer and saturated at the bounds of {@code long}",
+                    "e.g. for large counts. Products are exact as long as they stay below 2^53."}
+    };
+
+    public static void main(String[] args) throws IOException {
+        Path templateDir = Paths.get(args.length > 0 ? args[0] : "Project0/gen");
+        Path outputDir = Paths.get(args.length > 1 ? args[1] : "Project0/src");
+        String template = Files.readString(templateDir.resolve("PrimitiveMatrix.java.template"), StandardCharsets.UTF_8);
+        for (String[] type : TYPES) {
+            String source = template;
+            for (int i = 0; i < KEYS.length; ++i)
+                source = source.replace("$" + KEYS[i] + "$", type[i]);
+            if (source.indexOf('$') >= 0)
+                throw new RuntimeException("Unknown key in template: " + source.substring(source.indexOf('$')));
+            source = "//Generated by Project0/gen/Generate.java from PrimitiveMatrix.java.template, do not edit\n" + source;
+            Path file = outputDir.resolve(type[0] + "Matrix.java");
+            Files.writeString(file, source, StandardCharsets.UTF_8);
+            System.out.println("Generated " + file);
+        }
+    }
+}
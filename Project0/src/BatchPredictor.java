@@ -0,0 +1,155 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ *     Scores the records of a .csv file with a linear model, one block of rows at a time.
+ * </p>
+ * <p>
+ *     Each block of records is parsed into a column-major matrix X and scored with a single matrix-vector
+ *     multiplication X * w. Parsing, scoring and writing run on separate threads, connected by bounded queues
+ *     that recycle a fixed number of blocks, so the memory used does not depend on the number of records.
+ * </p>
+ */
+public class BatchPredictor {
+    private final Matrix w;
+    private final int n;
+    private final int blockRows;
+    private final int blocks;
+
+    /**
+     * Creates a new predictor.
+     * @param w The N x 1 weights
+     * @param blockRows The number of rows per block
+     * @param blocks The number of blocks in flight, at least 1
+     */
+    public BatchPredictor(Matrix w, int blockRows, int blocks) {
+        if (w.columns() != 1)
+            throw new RuntimeException("Weights are not a vector");
+        this.w = w;
+        this.n = w.rows();
+        this.blockRows = blockRows;
+        this.blocks = Math.max(1, blocks);
+    }
+
+    /**
+     * <p>
+     *     Scores all remaining records of {@code rdr} and writes a record of the id and the prediction for each
+     *     of them to {@code wtr}.
+     * </p>
+     * <p>
+     *     Each record consists of an id and the N feature values, as in test.csv. The writer is used on the
+     *     calling thread only and is not closed.
+     * </p>
+     * @param rdr The reader
+     * @param wtr The writer
+     * @return The number of records scored
+     * @throws RuntimeException If parsing, scoring or writing fails
+     */
+    public long predict(CSVReader rdr, CSVWriter wtr) {
+        BlockingQueue<Block> free = new ArrayBlockingQueue<>(this.blocks);
+        BlockingQueue<Block> parsed = new ArrayBlockingQueue<>(this.blocks);
+        BlockingQueue<Block> scored = new ArrayBlockingQueue<>(this.blocks);
+        for (int i = 0; i < this.blocks; ++i)
+            free.add(new Block(this.blockRows, this.n));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread parser = new Thread(() -> stage(free, parsed, failure, this::parse, rdr), "BatchPredictor-parser");
+        Thread scorer = new Thread(() -> stage(parsed, scored, failure, this::score, null), "BatchPredictor-scorer");
+        parser.setDaemon(true);
+        scorer.setDaemon(true);
+        parser.start();
+        scorer.start();
+        long count = 0;
+        try {
+            Block b;
+            do {
+                b = scored.take();
+                for (int r = 0; r < b.rows; ++r) {
+                    wtr.nextInt(b.ids[r]);
+                    wtr.nextDouble(b.yData[r]);
+                    wtr.nextRecord();
+                }
+                count += b.rows;
+                free.put(b);
+            } while (!b.last);
+            parser.join();
+            scorer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            parser.interrupt(); //Unblocks the stages if writing failed
+            scorer.interrupt();
+        }
+        if (failure.get() != null)
+            throw new RuntimeException(failure.get());
+        return count;
+    }
+
+    private interface Step {
+        void run(Block b, CSVReader rdr);
+    }
+
+    /**
+     * Moves blocks from {@code in} through {@code step} to {@code out} until the last block has passed. A failure
+     * is recorded and turns the current block into the last one, so the following stages terminate.
+     */
+    private static void stage(BlockingQueue<Block> in, BlockingQueue<Block> out, AtomicReference<Throwable> failure,
+                              Step step, CSVReader rdr) {
+        try {
+            Block b;
+            do {
+                b = in.take();
+                try {
+                    if (failure.get() == null)
+                        step.run(b, rdr);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                if (failure.get() != null) {
+                    b.rows = 0;
+                    b.last = true;
+                }
+                out.put(b);
+            } while (!b.last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parse(Block b, CSVReader rdr) {
+        int rows = 0;
+        while (rows < this.blockRows && rdr.hasNext()) {
+            b.ids[rows] = rdr.nextInt();
+            for (int j = 0, index = rows; j < this.n; ++j, index += this.blockRows)
+                b.xData[index] = rdr.nextDouble();
+            ++rows;
+        }
+        b.rows = rows;
+        b.last = rows < this.blockRows; //A partial block is the last one, possibly empty
+    }
+
+    private void score(Block b, CSVReader rdr) {
+        if (b.rows > 0)
+            b.x.mul(this.w, b.y); //Rows after b.rows hold stale values, which are not written
+    }
+
+    private static final class Block {
+        private final int[] ids;
+        private final Matrix x;
+        private final Matrix y;
+        private final double[] xData;
+        private final double[] yData;
+        private int rows = 0;
+        private boolean last = false;
+
+        private Block(int rows, int n) {
+            this.ids = new int[rows];
+            this.x = new Matrix(rows, n);
+            this.y = new Matrix(rows, 1);
+            this.xData = this.x.data();
+            this.yData = this.y.data();
+        }
+    }
+}
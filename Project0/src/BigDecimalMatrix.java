@@ -1,16 +1,36 @@
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * An M x N matrix with entries of type {@code BigDecimal}.
+ * <p>
+ *     An M x N matrix with entries of type {@code BigDecimal}.
+ * </p>
+ * <p>
+ *     Every matrix has a {@link MathContext}, which the operations called on it round their results to. With the
+ *     default {@link MathContext#UNLIMITED}, products are exact and the inversion divides and rounds its
+ *     intermediate values to {@code LEGACY_SCALE} decimal places, so the digits cannot grow from step to step.
+ * </p>
+ * <p>
+ *     Products of entries with at most 18 digits are computed in exact fixed-point arithmetic on their unscaled
+ *     {@code long} values with 128-bit accumulators, which gives the same values as {@code BigDecimal} arithmetic
+ *     without allocating per multiplication.
+ * </p>
  */
 public class BigDecimalMatrix {
-    private static final Map<Integer, Deque<BigDecimal[]>> bufs = new HashMap<>();
+    private static final int LEGACY_SCALE = 100;
+    private static final int PARALLEL_GRAIN = 1 << 10; //Multiply-adds per parallel task
+    private static final BigInteger MASK_64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private static final BufferPool<BigDecimal[]> bufs = new BufferPool<>(BigDecimal[]::new, b -> b.length, 8, 64L << 20);
     private final int m;
     private final int n;
     private final int mn;
     private final BigDecimal[] data;
+    private MathContext mc;
 
     /**
      * <p>
@@ -25,6 +45,24 @@ public class BigDecimalMatrix {
      * @throws RuntimeException If the data size does not match the dimensions
      */
     public BigDecimalMatrix(int m, int n, BigDecimal[] data) {
+        this(m, n, data, MathContext.UNLIMITED);
+    }
+
+    /**
+     * <p>
+     *     Creates a new M x N matrix with the backing data array in column-major order, whose operations round to
+     *     {@code mc}.
+     * </p>
+     * <p>
+     *     The data array is copied by reference and NOT cloned.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @param data The backing data array in column-major order
+     * @param mc The context to round to
+     * @throws RuntimeException If the data size does not match the dimensions
+     */
+    public BigDecimalMatrix(int m, int n, BigDecimal[] data, MathContext mc) {
         int mn = m * n;
         if (data.length != m * n)
             throw new RuntimeException("Wrong data size");
@@ -32,6 +70,7 @@ public class BigDecimalMatrix {
         this.n = n;
         this.mn = mn;
         this.data = data;
+        this.mc = mc;
     }
 
     /**
@@ -48,21 +87,79 @@ public class BigDecimalMatrix {
         this(m, n, new BigDecimal[m * n]);
     }
 
+    /**
+     * <p>
+     *     Creates a new M x N zero-initialized matrix, whose operations round to {@code mc}.
+     * </p>
+     * <p>
+     *     This method allocates a data buffer.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @param mc The context to round to
+     */
+    public BigDecimalMatrix(int m, int n, MathContext mc) {
+        this(m, n, new BigDecimal[m * n], mc);
+    }
+
+    /**
+     * <p>
+     *     Returns the pool of temporary buffers shared by all matrices of this type.
+     * </p>
+     * <p>
+     *     The pool is thread-safe. Its capacity may be configured and its counters inspected.
+     * </p>
+     * @return The buffer pool
+     */
+    public static BufferPool<BigDecimal[]> getBufferPool() {
+        return bufs;
+    }
+
     /**
      * <p>
      *     Prints information about the usage of buffers to {@code System.out}.
      * </p>
      */
     public static void printSystemInfo() {
-        for (Map.Entry<Integer, Deque<BigDecimal[]>> e : bufs.entrySet())
-            System.out.println("Size " + e.getKey() + " matrices: " + e.getValue().size() + " buffer(s)");
+        System.out.println(bufs);
+    }
+
+    /**
+     * @return The context the operations called on {@code this} round to
+     */
+    public MathContext getMathContext() {
+        return this.mc;
+    }
+
+    /**
+     * Sets the context the operations called on {@code this} round to.
+     * @param mc The context, {@link MathContext#UNLIMITED} for exact products
+     * @return {@code this}
+     */
+    public BigDecimalMatrix setMathContext(MathContext mc) {
+        this.mc = mc;
+        return this;
+    }
+
+    /**
+     * Rounds a product of the operations to the context of {@code this}.
+     */
+    private BigDecimal round(BigDecimal value) {
+        return this.mc.getPrecision() == 0 ? value : value.round(this.mc);
+    }
+
+    /**
+     * Rounds an intermediate value of the inversion to the context of {@code this}, or to {@code LEGACY_SCALE}
+     * decimal places if the context is unlimited.
+     */
+    private BigDecimal roundIntermediate(BigDecimal value) {
+        if (this.mc.getPrecision() != 0)
+            return value.round(this.mc);
+        return value.scale() > LEGACY_SCALE ? value.setScale(LEGACY_SCALE, RoundingMode.HALF_EVEN) : value;
     }
 
     private static BigDecimal[] popBuf(int mn) {
-        Deque<BigDecimal[]> stack = bufs.computeIfAbsent(mn, ArrayDeque::new);
-        if (stack.isEmpty())
-            return new BigDecimal[mn];
-        return stack.pop();
+        return bufs.pop(mn);
     }
 
     private static BigDecimal[] popBuf(BigDecimalMatrix mat) {
@@ -72,7 +169,8 @@ public class BigDecimalMatrix {
     }
 
     private static void pushBuf(BigDecimal[] buf) {
-        bufs.get(buf.length).push(buf);
+        Arrays.fill(buf, null); //Do not keep the values reachable from the pool
+        bufs.push(buf);
     }
 
     private static void pushBuf(BigDecimal[] buf, BigDecimalMatrix mat) {
@@ -143,10 +241,16 @@ public class BigDecimalMatrix {
      */
     public BigDecimal dot(BigDecimalMatrix other) {
         assertSameSize(this, other);
-        BigDecimal value = BigDecimal.ZERO;
-        for (int i = 0; i < this.mn; ++i)
-            value = value.add(this.data[i].multiply(other.data[i]));
-        return value;
+        Scaled a = Scaled.of(this.data), b = Scaled.of(other.data);
+        BigDecimal value = null;
+        if (scaledProducts(a, b))
+            value = dotScaled(a, 0, 1, b, 0, 1, this.mn, new long[2 * Long.SIZE]);
+        if (value == null) {
+            value = BigDecimal.ZERO;
+            for (int i = 0; i < this.mn; ++i)
+                value = value.add(this.data[i].multiply(other.data[i]));
+        }
+        return this.round(value);
     }
 
     /**
@@ -201,6 +305,34 @@ public class BigDecimalMatrix {
         return dest;
     }
 
+    /**
+     * <p>
+     *     Stores the transposed version of {@code this} into {@code dest}, splitting the work over the rows
+     *     of {@code this} in {@code pool}.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public BigDecimalMatrix transpose(BigDecimalMatrix dest, ForkJoinPool pool) {
+        assertTransposedSize(this, dest);
+        BigDecimal[] buf = popBuf(dest.mn);
+        int grain = Math.max(1, (PARALLEL_GRAIN << 6) / Math.max(1, this.n)); //Copying a reference is cheap
+        pool.invoke(new RangeTask(0, this.m, grain, (lo, hi) -> {
+            int thisIndex, destIndex = lo * this.n;
+            for (int i = lo; i < hi; ++i) {
+                thisIndex = i;
+                for (int j = 0; j < this.n; ++j) {
+                    buf[destIndex++] = this.data[thisIndex];
+                    thisIndex += this.m;
+                }
+            }
+        }));
+        pushBuf(buf, dest);
+        return dest;
+    }
+
     /**
      * <p>
      *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}.
@@ -217,25 +349,60 @@ public class BigDecimalMatrix {
         assertMultipliable(this, other);
         assertProductOf(this, other, dest);
         BigDecimal[] destBuf = popBuf(dest.mn);
-        int thisIndex = 0, otherIndex = 0, destIndex = 0;
+        Scaled a = Scaled.of(this.data), b = Scaled.of(other.data);
+        this.mulCells(other, a, b, destBuf, 0, dest.mn);
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}, splitting the
+     *     destination cells into ranges that are computed in {@code pool}.
+     * </p>
+     * <p>
+     *     Every cell is computed exactly as in {@link #mul(BigDecimalMatrix, BigDecimalMatrix)}, so the result is
+     *     identical to the sequential one. All operands may be the same object.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public BigDecimalMatrix mul(BigDecimalMatrix other, BigDecimalMatrix dest, ForkJoinPool pool) {
+        assertMultipliable(this, other);
+        assertProductOf(this, other, dest);
+        BigDecimal[] destBuf = popBuf(dest.mn);
+        Scaled a = Scaled.of(this.data), b = Scaled.of(other.data);
+        int grain = Math.max(1, PARALLEL_GRAIN / Math.max(1, this.n));
+        pool.invoke(new RangeTask(0, dest.mn, grain, (lo, hi) -> this.mulCells(other, a, b, destBuf, lo, hi)));
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * Computes the cells {@code lo} to {@code hi} (in column-major order) of the product of {@code this} and
+     * {@code other} into {@code destBuf}, from the fixed-point entries {@code a} and {@code b} if possible.
+     */
+    private void mulCells(BigDecimalMatrix other, Scaled a, Scaled b, BigDecimal[] destBuf, int lo, int hi) {
+        long[] scratch = scaledProducts(a, b) ? new long[2 * Long.SIZE] : null;
+        int i, otherIndex, thisIndex;
         BigDecimal acc;
-        for (int j = 0; j < dest.n; ++j) {
-            for (int i = 0; i < dest.m; ++i) {
+        for (int t = lo; t < hi; ++t) {
+            i = t % this.m;
+            otherIndex = (t / this.m) * other.m; //Start of the column of the right matrix
+            acc = scratch != null ? dotScaled(a, i, this.m, b, otherIndex, 1, this.n, scratch) : null;
+            if (acc == null) { //Does not fit into 128 bits
                 acc = BigDecimal.ZERO;
+                thisIndex = i;
                 for (int k = 0; k < this.n; ++k) {
-                    acc = acc.add(this.data[thisIndex].multiply(other.data[otherIndex]));
+                    acc = acc.add(this.data[thisIndex].multiply(other.data[otherIndex + k]));
                     thisIndex += this.m; //Advance left matrix to the right
-                    ++otherIndex; //Advance right matrix to the bottom
                 }
-                thisIndex += 1 - this.mn; //Reset left matrix to the left and move one down
-                otherIndex -= other.m; //Reset right matrix to the top
-                destBuf[destIndex++] = acc;
             }
-            thisIndex = 0;
-            otherIndex += other.m;
+            destBuf[t] = this.round(acc);
         }
-        pushBuf(destBuf, dest);
-        return dest;
     }
 
     /**
@@ -248,19 +415,44 @@ public class BigDecimalMatrix {
      * or if {@code dest} cannot hold the result due to its dimensions
      */
     public BigDecimalMatrix invert(BigDecimalMatrix dest) {
+        return this.invert(dest, null);
+    }
+
+    /**
+     * <p>
+     *     Inverts {@code this} and stores the result in {@code dest}, eliminating the rows below (and, in the
+     *     backward pass, above) each pivot in {@code pool}.
+     * </p>
+     * <p>
+     *     Every row is eliminated exactly as in {@link #invert(BigDecimalMatrix)}, so the result is identical to
+     *     the sequential one.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @param pool The pool executing the work, or {@code null} to work sequentially
+     * @return {@code dest}
+     * @throws RuntimeException If {@code this} is not square or singular
+     * or if {@code dest} cannot hold the result due to its dimensions
+     */
+    public BigDecimalMatrix invert(BigDecimalMatrix dest, ForkJoinPool pool) {
         assertSquare(this);
         assertSameSize(this, dest);
         BigDecimal[] lhs = popBuf(this);
         BigDecimal[] rhs = popBuf(dest.identity());
         int i, j, k, pI = 0, sI, pJ, sJ;
-        BigDecimal temp, factor;
-        for (i = 0; i < this.m; ++i) {
+        int grain = Math.max(1, PARALLEL_GRAIN / Math.max(1, 2 * this.n));
+        BigDecimal temp, factor, max = BigDecimal.ZERO;
+        for (i = 0; i < this.mn; ++i)
+            if (lhs[i].abs().compareTo(max) > 0)
+                max = lhs[i].abs();
+        //Pivots below half of the significant digits of the largest entry are treated as zero
+        BigDecimal tol = max.movePointLeft((this.mc.getPrecision() != 0 ? this.mc.getPrecision() : LEGACY_SCALE) / 2);
+        for (i = 0; i < this.m; ++i, pI += this.m + 1) {
             sI = pI; //Set swap row to pivot row
-            while (Math.abs(lhs[sI].doubleValue()) < 0.000001) { //TODO rel. error
-                ++sI; //Try other rows while degenerate
-                if (i + sI - pI == this.m)
-                    throw new RuntimeException("BigDecimalMatrix is singular");
-            }
+            for (k = pI + 1; k < pI + this.m - i; ++k) //Choose the largest pivot of the column
+                if (lhs[k].abs().compareTo(lhs[sI].abs()) > 0)
+                    sI = k;
+            if (lhs[sI].abs().compareTo(tol) <= 0)
+                throw new RuntimeException("BigDecimalMatrix is singular");
             if (sI != pI) { //If was degenerate at least once, we need to swap
                 pJ = i; //Start a row-wise iteration at the pivot row
                 sJ = i + sI - pI; //Start a row-wise iteration at the swap row
@@ -282,66 +474,87 @@ public class BigDecimalMatrix {
                     sJ += this.m;
                 }
             }
-            factor = BigDecimal.ONE.divide(lhs[pI], 100, RoundingMode.HALF_EVEN); //Get the pivot factor
+            factor = this.mc.getPrecision() != 0 ? BigDecimal.ONE.divide(lhs[pI], this.mc)
+                    : BigDecimal.ONE.divide(lhs[pI], LEGACY_SCALE, RoundingMode.HALF_EVEN); //Get the pivot factor
             pJ = i;
             for (j = 0; j < i; ++j) {
-                rhs[pJ] = rhs[pJ].multiply(factor);
+                rhs[pJ] = this.roundIntermediate(rhs[pJ].multiply(factor));
                 pJ += this.m;
             }
             lhs[pI] = BigDecimal.ONE; //Set the pivot's new value to 1
-            rhs[pI] = rhs[pI].multiply(factor); //Multiply RHS
+            rhs[pI] = this.roundIntermediate(rhs[pI].multiply(factor)); //Multiply RHS
             pJ += this.m; //Advance to the next column
             for (j = i + 1; j < this.n; ++j) { //Multiply all remaining columns with the pivot factor
-                lhs[pJ] = lhs[pJ].multiply(factor);
-                rhs[pJ] = rhs[pJ].multiply(factor);
+                lhs[pJ] = this.roundIntermediate(lhs[pJ].multiply(factor));
+                rhs[pJ] = this.roundIntermediate(rhs[pJ].multiply(factor));
                 pJ += this.m;
             }
-            sI = pI + 1; //First row after pivot
-            for (k = i + 1; k < this.m; ++k) { //Loop over all remaining rows
-                factor = lhs[sI]; //Get factor for row
-                pJ = i;
-                sJ = k;
-                for (j = 0; j < i; ++j) {
-                    rhs[sJ] = rhs[sJ].subtract(factor.multiply(rhs[pJ]));
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-                lhs[sI] = BigDecimal.ZERO; //Set new value of eliminated column to 0
-                rhs[sI] = rhs[sI].subtract(factor.multiply(rhs[pI]));
-                pJ += this.m; //Jump to second column
-                sJ += this.m; //Jump to second column
-                for (j = i + 1; j < this.n; ++j) { //Loop over all remaining columns
-                    lhs[sJ] = lhs[sJ].subtract(factor.multiply(lhs[pJ]));
-                    rhs[sJ] = rhs[sJ].subtract(factor.multiply(rhs[pJ]));
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-                ++sI;
-            }
-            pI = sI + i + 1;
+            int pivot = i;
+            this.forRows(pool, i + 1, this.m, grain, (lo, hi) -> { //Loop over all remaining rows
+                for (int row = lo; row < hi; ++row)
+                    this.eliminate(lhs, rhs, pivot, row);
+            });
         }
-        pI = this.mn - 1; //Set last element as pivot
         for (i = this.m - 1; i >= 0; --i) { //Loop over all rows backwards
-            sI = pI - 1;
-            for (k = i - 1; k >= 0; --k) { //Loop over the remaining rows backwards
-                factor = lhs[sI];
-                lhs[sI] = BigDecimal.ZERO;
-                pJ = i;
-                sJ = k;
-                for (j = 0; j < this.n; ++j) {
-                    rhs[sJ] = rhs[sJ].subtract(factor.multiply(rhs[pJ]));
-                    sJ += this.m;
-                    pJ += this.m;
-                }
-                --sI;
-            }
-            pI -= this.m + 1;
+            int pivot = i;
+            this.forRows(pool, 0, i, grain, (lo, hi) -> { //Loop over the rows above
+                for (int row = lo; row < hi; ++row)
+                    this.substitute(lhs, rhs, pivot, row);
+            });
         }
         pushBuf(rhs, dest);
         pushBuf(lhs);
         return dest;
     }
 
+    /**
+     * Subtracts the multiple of the pivot row {@code i} from row {@code k} below it that zeroes column {@code i}.
+     */
+    private void eliminate(BigDecimal[] lhs, BigDecimal[] rhs, int i, int k) {
+        int pJ = i, sJ = k, j;
+        BigDecimal factor = lhs[k + i * this.m]; //Get factor for row
+        for (j = 0; j < i; ++j) {
+            rhs[sJ] = this.roundIntermediate(rhs[sJ].subtract(factor.multiply(rhs[pJ])));
+            pJ += this.m;
+            sJ += this.m;
+        }
+        lhs[sJ] = BigDecimal.ZERO; //Set new value of eliminated column to 0
+        rhs[sJ] = this.roundIntermediate(rhs[sJ].subtract(factor.multiply(rhs[pJ])));
+        pJ += this.m; //Jump to second column
+        sJ += this.m; //Jump to second column
+        for (j = i + 1; j < this.n; ++j) { //Loop over all remaining columns
+            lhs[sJ] = this.roundIntermediate(lhs[sJ].subtract(factor.multiply(lhs[pJ])));
+            rhs[sJ] = this.roundIntermediate(rhs[sJ].subtract(factor.multiply(rhs[pJ])));
+            pJ += this.m;
+            sJ += this.m;
+        }
+    }
+
+    /**
+     * Subtracts the multiple of the reduced pivot row {@code i} from row {@code k} above it that zeroes column
+     * {@code i}.
+     */
+    private void substitute(BigDecimal[] lhs, BigDecimal[] rhs, int i, int k) {
+        int pJ = i, sJ = k;
+        BigDecimal factor = lhs[k + i * this.m];
+        lhs[k + i * this.m] = BigDecimal.ZERO;
+        for (int j = 0; j < this.n; ++j) {
+            rhs[sJ] = this.roundIntermediate(rhs[sJ].subtract(factor.multiply(rhs[pJ])));
+            sJ += this.m;
+            pJ += this.m;
+        }
+    }
+
+    /**
+     * Runs {@code action} on the rows {@code lo} to {@code hi}, in {@code pool} unless it is {@code null}.
+     */
+    private void forRows(ForkJoinPool pool, int lo, int hi, int grain, RangeAction action) {
+        if (pool == null || hi - lo <= grain)
+            action.run(lo, hi);
+        else
+            pool.invoke(new RangeTask(lo, hi, grain, action));
+    }
+
     /**
      * Inverts {@code this} and stores the result in {@code this}.
      * @return {@code this}
@@ -350,4 +563,133 @@ public class BigDecimalMatrix {
     public BigDecimalMatrix invert() {
         return this.invert(this);
     }
+
+    /**
+     * Returns whether the products of entries of {@code a} and {@code b} can be summed by {@code dotScaled}.
+     */
+    private static boolean scaledProducts(Scaled a, Scaled b) {
+        return a != null && b != null && a.maxScale - a.minScale + b.maxScale - b.minScale < Long.SIZE;
+    }
+
+    /**
+     * <p>
+     *     Computes the exact sum of the products of the {@code len} entries of {@code a} at {@code aOff},
+     *     {@code aOff + aStride}, ... and of {@code b} at {@code bOff}, {@code bOff + bStride}, ... in fixed-point
+     *     arithmetic.
+     * </p>
+     * <p>
+     *     The products of the unscaled values are summed in one 128-bit accumulator per scale in {@code acc}, and
+     *     the accumulators are only aligned to a common scale at the end. The result has the scale that adding the
+     *     {@code BigDecimal} products to {@link BigDecimal#ZERO} gives, so it is equal to it in every respect.
+     *     Returns {@code null} if an accumulator overflows.
+     * </p>
+     */
+    private static BigDecimal dotScaled(Scaled a, int aOff, int aStride, Scaled b, int bOff, int bStride, int len,
+                                        long[] acc) {
+        int base = a.minScale + b.minScale, s;
+        long used = 0L, x, y, lo, sum;
+        try {
+            for (int k = 0; k < len; ++k, aOff += aStride, bOff += bStride) {
+                x = a.values[aOff];
+                y = b.values[bOff];
+                s = a.scales[aOff] + b.scales[bOff] - base;
+                if ((used & 1L << s) == 0) {
+                    used |= 1L << s;
+                    acc[2 * s] = 0L;
+                    acc[2 * s + 1] = 0L;
+                }
+                lo = acc[2 * s + 1];
+                sum = lo + x * y; //Add the 128-bit product to hi:lo
+                acc[2 * s] = Math.addExact(acc[2 * s], Math.multiplyHigh(x, y) + (Long.compareUnsigned(sum, lo) < 0 ? 1L : 0L));
+                acc[2 * s + 1] = sum;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        if (used == 0L)
+            return BigDecimal.ZERO;
+        int scale = Math.max(0, base + 63 - Long.numberOfLeadingZeros(used)); //The largest scale of a product
+        if (Long.bitCount(used) == 1) {
+            s = Long.numberOfTrailingZeros(used);
+            if (acc[2 * s] == acc[2 * s + 1] >> 63) //Fits into a long
+                return BigDecimal.valueOf(acc[2 * s + 1], base + s).setScale(scale, RoundingMode.UNNECESSARY);
+        }
+        BigInteger value = BigInteger.ZERO;
+        for (long bits = used; bits != 0L; bits &= bits - 1) {
+            s = Long.numberOfTrailingZeros(bits);
+            value = value.add(BigInteger.valueOf(acc[2 * s]).shiftLeft(64)
+                    .or(BigInteger.valueOf(acc[2 * s + 1]).and(MASK_64))
+                    .multiply(BigInteger.TEN.pow(scale - base - s)));
+        }
+        return new BigDecimal(value, scale);
+    }
+
+    /**
+     * The entries of a matrix as unscaled {@code long} values and scales.
+     */
+    private static final class Scaled {
+        private final long[] values;
+        private final int[] scales;
+        private final int minScale;
+        private final int maxScale;
+
+        private Scaled(long[] values, int[] scales, int minScale, int maxScale) {
+            this.values = values;
+            this.scales = scales;
+            this.minScale = minScale;
+            this.maxScale = maxScale;
+        }
+
+        /**
+         * Converts {@code data}, or returns {@code null} if the unscaled value of any entry does not fit into a
+         * {@code long}.
+         */
+        private static Scaled of(BigDecimal[] data) {
+            long[] values = new long[data.length];
+            int[] scales = new int[data.length];
+            int minScale = Integer.MAX_VALUE, maxScale = Integer.MIN_VALUE;
+            for (int i = 0; i < data.length; ++i) {
+                if (data[i].precision() > 18)
+                    return null;
+                values[i] = data[i].unscaledValue().longValue();
+                scales[i] = data[i].scale();
+                minScale = Math.min(minScale, scales[i]);
+                maxScale = Math.max(maxScale, scales[i]);
+            }
+            return data.length == 0 ? new Scaled(values, scales, 0, 0) : new Scaled(values, scales, minScale, maxScale);
+        }
+    }
+
+    private interface RangeAction {
+        void run(int lo, int hi);
+    }
+
+    /**
+     * Splits the index range {@code lo} to {@code hi} in halves until it is at most {@code grain} long.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+        private final RangeAction action;
+
+        private RangeTask(int lo, int hi, int grain, RangeAction action) {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo <= this.grain) {
+                this.action.run(this.lo, this.hi);
+                return;
+            }
+            int mid = (this.lo + this.hi) >>> 1;
+            invokeAll(new RangeTask(this.lo, mid, this.grain, this.action),
+                    new RangeTask(mid, this.hi, this.grain, this.action));
+        }
+    }
 }
@@ -0,0 +1,174 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ *     A thread-safe pool of array buffers of type {@code B}, striped by buffer length.
+ * </p>
+ * <p>
+ *     Each length has its own lock-free stack. The pool retains at most {@link #getCapacity()} bytes: returning a
+ *     buffer that does not fit evicts pooled buffers, each time the least recently returned one of the first
+ *     length found, and the returned buffer itself is dropped if that is not enough. A buffer larger than the
+ *     whole capacity is dropped right away without evicting anything. Eviction is thus least recently used
+ *     within a length only, not across the pool.
+ * </p>
+ * @param <B> The buffer type, e.g. {@code double[]}
+ */
+public class BufferPool<B> {
+    private final Map<Integer, ConcurrentLinkedDeque<B>> bufs = new ConcurrentHashMap<>();
+    private final IntFunction<B> allocator;
+    private final ToIntFunction<B> length;
+    private final long elementBytes;
+    private final AtomicLong retained = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long capacity;
+
+    /**
+     * Creates a new empty pool.
+     * @param allocator Allocates a new buffer of the given length
+     * @param length Returns the length of a buffer
+     * @param elementBytes The size of a buffer element in bytes
+     * @param capacity The maximum number of bytes retained by the pool
+     */
+    public BufferPool(IntFunction<B> allocator, ToIntFunction<B> length, int elementBytes, long capacity) {
+        this.allocator = allocator;
+        this.length = length;
+        this.elementBytes = elementBytes;
+        this.capacity = capacity;
+    }
+
+    /**
+     * <p>
+     *     Takes a buffer of the given length from the pool, or allocates one if there is none.
+     * </p>
+     * <p>
+     *     The contents of a pooled buffer are undefined.
+     * </p>
+     * @param length The buffer length
+     * @return The buffer
+     */
+    public B pop(int length) {
+        ConcurrentLinkedDeque<B> stack = this.bufs.get(length);
+        B buf = stack == null ? null : stack.pollFirst();
+        if (buf == null) {
+            this.misses.increment();
+            return this.allocator.apply(length);
+        }
+        this.retained.addAndGet(-length * this.elementBytes);
+        this.hits.increment();
+        return buf;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use the buffer afterwards.
+     * @param buf The buffer
+     */
+    public void push(B buf) {
+        int length = this.length.applyAsInt(buf);
+        long bytes = length * this.elementBytes;
+        if (bytes > this.capacity) { //Would evict everything and still not fit
+            this.evictions.increment();
+            return;
+        }
+        while (!this.reserve(bytes)) {
+            if (!this.evictOne()) {
+                this.evictions.increment(); //Drop the buffer itself
+                return;
+            }
+        }
+        this.bufs.computeIfAbsent(length, l -> new ConcurrentLinkedDeque<>()).offerFirst(buf);
+    }
+
+    private boolean reserve(long bytes) {
+        long current;
+        do {
+            current = this.retained.get();
+            if (current + bytes > this.capacity)
+                return false;
+        } while (!this.retained.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    private boolean evictOne() {
+        B buf;
+        for (ConcurrentLinkedDeque<B> stack : this.bufs.values()) {
+            buf = stack.pollLast(); //Least recently returned buffer of this length
+            if (buf != null) {
+                this.retained.addAndGet(-this.length.applyAsInt(buf) * this.elementBytes);
+                this.evictions.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evicts all buffers.
+     */
+    public void clear() {
+        while (this.evictOne());
+    }
+
+    /**
+     * @return The maximum number of bytes retained by the pool
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Sets the maximum number of bytes retained by the pool, evicting buffers until it is met.
+     * @param capacity The capacity in bytes
+     */
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+        while (this.retained.get() > capacity && this.evictOne());
+    }
+
+    /**
+     * @return The number of requests served by a pooled buffer
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return The number of requests that had to allocate a buffer
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return The number of buffers evicted or dropped due to the capacity
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return The number of bytes currently retained by the pool
+     */
+    public long getBytesRetained() {
+        return this.retained.get();
+    }
+
+    /**
+     * <p>
+     *     Creates a textual representation of the counters of {@code this}.
+     * </p>
+     * @return String with the counters
+     */
+    @Override
+    public String toString() {
+        return "Hits: " + this.getHits() + ", misses: " + this.getMisses() + ", evictions: " + this.getEvictions()
+                + ", retained: " + this.getBytesRetained() + " / " + this.getCapacity() + " bytes";
+    }
+}
@@ -1,15 +1,48 @@
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongFunction;
 
 /**
- * An optimized reader for reading from .csv files.
+ * <p>
+ *     An optimized reader for reading from .csv files.
+ * </p>
+ * <p>
+ *     The file is parsed as ASCII bytes from a plain {@code byte} array. Files of up to {@code MAP_WINDOW} bytes are
+ *     memory-mapped and copied into the array in blocks, larger files are read through the channel in blocks.
+ * </p>
  */
 public class CSVReader {
-    private final BufferedReader reader;
+    private static final long MAP_WINDOW = 1L << 30; //1 GiB
+    private static final int BLOCK = 1 << 16; //64 KiB
+    private static final long MIN_CHUNK = 1L << 22; //4 MiB
+    private static final int MIN_POW5 = -342;
+    private static final int MAX_POW5 = 308;
+    private static final long INF_BITS = 0x7FF0000000000000L;
+    private static final long[] POW5 = pow5Table();
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final FileChannel channel;
+    private final ByteBuffer mapped;
+    private final byte[] bytes = new byte[BLOCK];
+    private final ByteBuffer block = ByteBuffer.wrap(this.bytes);
+    private int pos = 0;
+    private int limit = 0;
+    private byte[] scratch = new byte[256];
+    private char[] chars = new char[256];
+    private int delimiter = -1; //The byte that ended the last field, -1 at the end of the file
 
     /**
      * <p>
@@ -22,12 +55,50 @@ public class CSVReader {
      */
     public CSVReader(String path) {
         try {
-            this.reader = new BufferedReader(new FileReader(path));
-        } catch (FileNotFoundException e) {
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            long size = this.channel.size();
+            this.mapped = size <= MAP_WINDOW ? this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Creates a new reader over the remaining bytes of {@code buffer}.
+     */
+    private CSVReader(ByteBuffer buffer) {
+        this.channel = null;
+        this.mapped = buffer;
+    }
+
+    /**
+     * Refills the block array, returns {@code false} at the end of the file.
+     */
+    private boolean fill() {
+        if (this.mapped != null) {
+            this.limit = Math.min(BLOCK, this.mapped.remaining());
+            this.mapped.get(this.bytes, 0, this.limit);
+        } else {
+            try {
+                this.block.clear();
+                this.limit = Math.max(0, this.channel.read(this.block));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.pos = 0;
+        return this.limit > 0;
+    }
+
+    /**
+     * Consumes the next byte, returns -1 at the end of the file.
+     */
+    private int read() {
+        if (this.pos == this.limit && !this.fill())
+            return -1;
+        return this.bytes[this.pos++] & 0xFF;
+    }
+
     /**
      * <p>
      *     Consumes the next line and returns it.
@@ -38,13 +109,226 @@ public class CSVReader {
      * @return The next line
      */
     public String nextLine() {
-        try {
-            return reader.readLine();
+        int len = 0, curr = this.read();
+        if (curr == -1)
+            return null;
+        while (curr != '\n' && curr != -1) {
+            if (len == this.scratch.length)
+                this.scratch = Arrays.copyOf(this.scratch, 2 * len);
+            this.scratch[len++] = (byte) curr;
+            curr = this.read();
+        }
+        if (len > 0 && this.scratch[len - 1] == '\r')
+            --len;
+        return new String(this.scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p>
+     *     Reads a whole .csv file of numeric records into column-major matrices, parsing it in parallel.
+     * </p>
+     * <p>
+     *     The file is split into chunks at line boundaries. In a first pass the lines of every chunk are counted,
+     *     which yields the row count and the first row of every chunk. In a second pass every chunk is parsed
+     *     directly into the data arrays of the matrices. The consecutive columns of each record are distributed
+     *     over the matrices by {@code widths}, e.g. widths 1, 1, 10 split the records of train.csv into the ids,
+     *     y and X.
+     * </p>
+     * <p>
+     *     Every record must have as many values as the widths add up to, blank lines are not supported.
+     * </p>
+     * @param path The file name
+     * @param skipLines The number of leading lines to skip, e.g. 1 for the column headers
+     * @param pool The pool executing the work
+     * @param widths The column counts of the matrices
+     * @return The matrices, each with one row per record
+     */
+    public static Matrix[] readColumnMajor(String path, int skipLines, ForkJoinPool pool, int... widths) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer[] buffers = mapChunks(channel, skipLines, pool);
+            long[] firstRows = firstRows(buffers, pool);
+            if (firstRows[buffers.length] > Integer.MAX_VALUE)
+                throw new RuntimeException("File has too many records");
+            int rows = (int) firstRows[buffers.length];
+
+            Matrix[] matrices = new Matrix[widths.length];
+            double[][] data = new double[widths.length][];
+            for (int g = 0; g < widths.length; ++g) {
+                matrices[g] = new Matrix(rows, widths[g]);
+                data[g] = matrices[g].data();
+            }
+            List<ForkJoinTask<?>> parses = new ArrayList<>();
+            for (int k = 0; k < buffers.length; ++k) {
+                ByteBuffer buffer = buffers[k];
+                int r0 = (int) firstRows[k], r1 = (int) firstRows[k + 1];
+                parses.add(pool.submit(() -> {
+                    CSVReader rdr = new CSVReader(buffer);
+                    for (int r = r0; r < r1; ++r)
+                        for (int g = 0; g < widths.length; ++g)
+                            for (int c = 0, index = r; c < widths[g]; ++c, index += rows)
+                                data[g][index] = rdr.nextDouble();
+                }));
+            }
+            for (ForkJoinTask<?> parse : parses)
+                parse.join();
+            return matrices;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * <p>
+     *     Reads a whole .csv file of numeric records with {@code columns} values each into the column-major matrix
+     *     that {@code dest} creates for the row count, e.g. one mapped on a file, parsing it in parallel.
+     * </p>
+     * <p>
+     *     The file is split and counted like in {@link #readColumnMajor(String, int, ForkJoinPool, int...)}. Every
+     *     chunk is parsed in blocks of rows into small column buffers, and every column of a block is copied into
+     *     the matrix at once, so the memory used on the heap does not grow with the file.
+     * </p>
+     * @param path The file name
+     * @param skipLines The number of leading lines to skip, e.g. 1 for the column headers
+     * @param pool The pool executing the work
+     * @param columns The number of values per record
+     * @param dest Creates the M x {@code columns} destination matrix for the row count M
+     * @return The matrix created by {@code dest}
+     */
+    static OffHeapMatrix readColumnMajor(String path, int skipLines, ForkJoinPool pool, int columns,
+                                        LongFunction<OffHeapMatrix> dest) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer[] buffers = mapChunks(channel, skipLines, pool);
+            long[] firstRows = firstRows(buffers, pool);
+            long rows = firstRows[buffers.length];
+            OffHeapMatrix mat = dest.apply(rows);
+            int blockRows = Math.max(1, BLOCK / Math.max(1, columns));
+            List<ForkJoinTask<?>> parses = new ArrayList<>();
+            for (int k = 0; k < buffers.length; ++k) {
+                ByteBuffer buffer = buffers[k];
+                long r0 = firstRows[k], r1 = firstRows[k + 1];
+                parses.add(pool.submit(() -> {
+                    CSVReader rdr = new CSVReader(buffer);
+                    double[][] block = new double[columns][blockRows];
+                    int length;
+                    for (long r = r0; r < r1; r += length) {
+                        length = (int) Math.min(blockRows, r1 - r);
+                        for (int i = 0; i < length; ++i)
+                            for (int c = 0; c < columns; ++c)
+                                block[c][i] = rdr.nextDouble();
+                        for (int c = 0; c < columns; ++c) //Chunks write disjoint rows of every column
+                            mat.load(block[c], 0, length, r + c * rows);
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> parse : parses)
+                parse.join();
+            return mat;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Skips {@code skipLines} lines of the file in {@code channel} and maps the rest in chunks that end at line
+     * boundaries, enough to keep {@code pool} busy but at most {@code MAP_WINDOW} bytes each.
+     */
+    private static ByteBuffer[] mapChunks(FileChannel channel, int skipLines, ForkJoinPool pool) throws IOException {
+        long size = channel.size(), start = 0;
+        for (int i = 0; i < skipLines; ++i)
+            start = nextLineStart(channel, start, size);
+        long chunks = Math.max((size - start + MAP_WINDOW - 1) / MAP_WINDOW,
+                Math.min(4L * pool.getParallelism(), (size - start + MIN_CHUNK - 1) / MIN_CHUNK));
+        chunks = Math.max(1, chunks);
+        long[] bounds = new long[(int) chunks + 1];
+        bounds[0] = start;
+        for (int k = 1; k < chunks; ++k)
+            bounds[k] = Math.max(bounds[k - 1], nextLineStart(channel, start + (size - start) * k / chunks - 1, size));
+        bounds[(int) chunks] = size;
+        ByteBuffer[] buffers = new ByteBuffer[(int) chunks];
+        for (int k = 0; k < chunks; ++k)
+            buffers[k] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[k], bounds[k + 1] - bounds[k]);
+        return buffers;
+    }
+
+    /**
+     * Counts the lines of every chunk in {@code pool} and returns the first row of every chunk, followed by the
+     * total row count.
+     */
+    private static long[] firstRows(ByteBuffer[] buffers, ForkJoinPool pool) {
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>();
+        for (ByteBuffer buffer : buffers)
+            counts.add(pool.submit(() -> countLines(buffer)));
+        long[] firstRows = new long[buffers.length + 1];
+        for (int k = 0; k < buffers.length; ++k)
+            firstRows[k + 1] = firstRows[k] + counts.get(k).join();
+        return firstRows;
+    }
+
+    /**
+     * Returns the position after the next line feed at or after {@code from}, or {@code size} if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long pos = from;
+        int read;
+        while (pos < size) {
+            buf.clear();
+            read = channel.read(buf, pos);
+            for (int i = 0; i < read; ++i)
+                if (buf.get(i) == '\n')
+                    return pos + i + 1;
+            pos += Math.max(read, 0);
+        }
+        return size;
+    }
+
+    /**
+     * Counts the lines in {@code buffer}, including an unterminated last line.
+     */
+    private static int countLines(ByteBuffer buffer) {
+        int lines = 0, limit = buffer.limit();
+        for (int i = 0; i < limit; ++i)
+            if (buffer.get(i) == '\n')
+                ++lines;
+        if (limit > 0 && buffer.get(limit - 1) != '\n')
+            ++lines;
+        return lines;
+    }
+
+    /**
+     * Returns the next byte without consuming it, returns -1 at the end of the file.
+     */
+    private int peek() {
+        if (this.pos == this.limit && !this.fill())
+            return -1;
+        return this.bytes[this.pos] & 0xFF;
+    }
+
+    /**
+     * Consumes the next field into the scratch array and returns its length. A field ends at a comma, a line feed,
+     * a carriage return (together with the line feed following it) or the end of the file.
+     */
+    private int nextField() {
+        int len = 0, curr = this.read();
+        while (curr != ',' && curr != '\n' && curr != '\r' && curr != -1) {
+            if (len == this.scratch.length)
+                this.scratch = Arrays.copyOf(this.scratch, 2 * len);
+            this.scratch[len++] = (byte) curr;
+            curr = this.read();
+        }
+        if (curr == '\r' && this.peek() == '\n')
+            ++this.pos;
+        this.delimiter = curr;
+        return len;
+    }
+
+    /**
+     * @return {@code true} if there is anything left to read
+     */
+    public boolean hasNext() {
+        return this.peek() != -1;
+    }
+
     /**
      * <p>Consumes the next {@code int} and returns it.</p>
      * <p>
@@ -54,110 +338,243 @@ public class CSVReader {
      * @return The next {@code int} value.
      */
     public int nextInt() {
-        try {
-            int sign;
-            int curr = this.reader.read();
-            if (curr == '-') {
-                sign = -1;
-                curr = this.reader.read();
-            } else {
-                sign = 1;
-                if (curr == '+')
-                    curr = this.reader.read();
-            }
-            int value = 0;
-            while (curr != ',' && curr != '\n' && curr != -1) {
-                value = 10 * value + (curr - '0');
-                curr = this.reader.read();
-            }
-            return sign * value;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return parseInt(this.scratch, 0, this.nextField());
     }
 
     /**
      * <p>Consumes the next {@code double} and returns it.</p>
      * <p>
-     *     It is assumed that the value read can fit in the {@code double} type.
-     *     No checking is performed during or after the parsing of the value.
+     *     The value is correctly rounded, i.e. equal to the one returned by {@link Double#parseDouble(String)}.
+     *     Scientific notation, {@code NaN} and {@code Infinity} are supported.
      * </p>
      * @return The next {@code double} value.
      */
     public double nextDouble() {
-        try {
-            double sign;
-            int curr = this.reader.read();
-            if (curr == '-') {
-                sign = -1d;
-                curr = this.reader.read();
-            } else {
-                sign = 1d;
-                if (curr == '+')
-                    curr = this.reader.read();
-            }
-            double value = 0d;
-            while (curr != '.' && curr != ',' && curr != '\n' && curr != -1) {
-                value = 10d * value + (curr - '0');
-                curr = this.reader.read();
-            }
-            if (curr == '.') {
-                double fPart = 0;
-                double fScale = 1;
-                curr = this.reader.read();
-                while (curr != ',' && curr != '\n' && curr != -1) {
-                    fPart = 10d * fPart + (curr - '0');
-                    fScale *= 10d;
-                    curr = this.reader.read();
-                }
-                value += fPart / fScale;
-            }
-            return sign * value;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return parseDouble(this.scratch, 0, this.nextField());
     }
 
     /**
      * <p>Consumes the next {@code BigDecimal} and returns it.</p>
      * <p>
-     *     It is assumed that the value read can fit in the {@code BigDecimal} type.
-     *     No checking is performed during or after the parsing of the value.
+     *     The value is exact, scientific notation is supported.
      * </p>
      * @return The next {@code BigDecimal} value.
      */
     public BigDecimal nextBigDecimal() {
-        try {
-            BigDecimal sign;
-            int curr = this.reader.read();
-            if (curr == '-') {
-                sign = new BigDecimal("-1");
-                curr = this.reader.read();
-            } else {
-                sign = BigDecimal.ONE;
-                if (curr == '+')
-                    curr = this.reader.read();
+        int len = this.nextField();
+        if (len > this.chars.length)
+            this.chars = new char[this.scratch.length];
+        for (int i = 0; i < len; ++i)
+            this.chars[i] = (char) this.scratch[i];
+        return len == 0 ? BigDecimal.ZERO : new BigDecimal(this.chars, 0, len);
+    }
+
+    /**
+     * <p>
+     *     Consumes all remaining records into a sparse matrix with one row per record, without ever creating a
+     *     dense array.
+     * </p>
+     * <p>
+     *     The nonzero values of every column are appended to growing arrays of that column, which are packed into
+     *     the {@link SparseMatrix} at the end, so memory scales with the nonzeros. Columns holding e.g. ids or
+     *     targets can be split off with {@link SparseMatrix#columns(int, int)}.
+     * </p>
+     * <p>
+     *     Every record must have {@code columns} values, blank lines are not supported. A record with fewer or
+     *     more values is rejected rather than shifting the values of the following records into other columns.
+     * </p>
+     * @param columns The number of values per record
+     * @return The matrix
+     * @throws RuntimeException If a record does not have {@code columns} values
+     */
+    public SparseMatrix nextSparse(int columns) {
+        int[][] rows = new int[columns][16];
+        double[][] values = new double[columns][16];
+        int[] counts = new int[columns];
+        int m = 0, c;
+        double v;
+        for (; this.hasNext(); ++m) {
+            for (int j = 0; j < columns; ++j) {
+                v = this.nextDouble();
+                if ((this.delimiter == ',') != (j < columns - 1)) //A line end before the last value or none after it
+                    throw new RuntimeException("Record " + (m + 1) + " does not have " + columns + " values");
+                if (v != 0d) {
+                    c = counts[j]++;
+                    if (c == rows[j].length) {
+                        rows[j] = Arrays.copyOf(rows[j], 2 * c);
+                        values[j] = Arrays.copyOf(values[j], 2 * c);
+                    }
+                    rows[j][c] = m;
+                    values[j][c] = v;
+                }
             }
-            BigDecimal value = BigDecimal.ZERO;
-            while (curr != '.' && curr != ',' && curr != '\n' && curr != -1) {
-                value = BigDecimal.TEN.multiply(value).add(new BigDecimal(curr - '0'));
-                curr = this.reader.read();
+        }
+        int[] colPtr = new int[columns + 1];
+        for (int j = 0; j < columns; ++j)
+            colPtr[j + 1] = colPtr[j] + counts[j];
+        int[] rowIdx = new int[colPtr[columns]];
+        double[] vals = new double[colPtr[columns]];
+        for (int j = 0; j < columns; ++j) {
+            System.arraycopy(rows[j], 0, rowIdx, colPtr[j], counts[j]);
+            System.arraycopy(values[j], 0, vals, colPtr[j], counts[j]);
+            rows[j] = null; //Release the column early
+            values[j] = null;
+        }
+        return new SparseMatrix(m, columns, colPtr, rowIdx, vals);
+    }
+
+    /**
+     * Parses the {@code int} in {@code s[from:to]} without any checking.
+     */
+    static int parseInt(byte[] s, int from, int to) {
+        int i = from, sign = 1, value = 0;
+        if (i < to && (s[i] == '-' || s[i] == '+'))
+            sign = s[i++] == '-' ? -1 : 1;
+        for (; i < to; ++i)
+            value = 10 * value + (s[i] - '0');
+        return sign * value;
+    }
+
+    /**
+     * <p>
+     *     Parses the {@code double} in {@code s[from:to]}, correctly rounded.
+     * </p>
+     * <p>
+     *     Up to 19 significant digits are collected into a {@code long} w together with a decimal exponent q. If w
+     *     and 10^q are exact doubles, their product or quotient is correctly rounded (Clinger's fast path).
+     *     Otherwise the Eisel-Lemire algorithm multiplies w with a 128-bit approximation of 5^q. If digits had to
+     *     be dropped and w + 1 rounds differently, or if the approximation is not sufficient, the text is handed to
+     *     {@link Double#parseDouble(String)}. Only this rare slow path allocates.
+     * </p>
+     */
+    static double parseDouble(byte[] s, int from, int to) {
+        int i = from, digits = 0, q = 0, d;
+        boolean negative = false, truncated = false;
+        if (i < to && (s[i] == '-' || s[i] == '+'))
+            negative = s[i++] == '-';
+        if (i < to && (s[i] | 0x20) == 'n') //NaN
+            return Double.NaN;
+        if (i < to && (s[i] | 0x20) == 'i') //Inf or Infinity
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        long w = 0;
+        for (; i < to && (d = s[i] - '0') >= 0 && d <= 9; ++i) { //Integer part
+            if (digits < 19) {
+                w = 10 * w + d;
+                if (w != 0) //Leading zeros are not significant
+                    ++digits;
+            } else {
+                ++q;
+                truncated |= d != 0;
             }
-            if (curr == '.') {
-                BigDecimal fPart = BigDecimal.ZERO;
-                BigDecimal fScale = BigDecimal.ONE;
-                curr = this.reader.read();
-                while (curr != ',' && curr != '\n' && curr != -1) {
-                    fPart = BigDecimal.TEN.multiply(fPart).add(new BigDecimal(curr - '0'));
-                    fScale = BigDecimal.TEN.multiply(fScale);
-                    curr = this.reader.read();
+        }
+        if (i < to && s[i] == '.') {
+            for (++i; i < to && (d = s[i] - '0') >= 0 && d <= 9; ++i) { //Fractional part
+                if (digits < 19) {
+                    w = 10 * w + d;
+                    if (w != 0)
+                        ++digits;
+                    --q;
+                } else {
+                    truncated |= d != 0;
                 }
-                value = value.add(fPart.divide(fScale, 100, RoundingMode.HALF_EVEN));
             }
-            return sign.multiply(value);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        if (i < to && (s[i] | 0x20) == 'e') {
+            boolean negativeExp = false;
+            int exp = 0;
+            if (++i < to && (s[i] == '-' || s[i] == '+'))
+                negativeExp = s[i++] == '-';
+            for (; i < to && (d = s[i] - '0') >= 0 && d <= 9; ++i)
+                if (exp < 100000) //Anything larger under- or overflows anyway
+                    exp = 10 * exp + d;
+            q += negativeExp ? -exp : exp;
+        }
+        double value;
+        if (!truncated && q >= -22 && q <= 22 && Long.compareUnsigned(w, 1L << 53) <= 0) {
+            value = q < 0 ? (double) w / POW10[-q] : (double) w * POW10[q];
+        } else {
+            long bits = eiselLemire(w, q);
+            if (truncated && bits != -1L && eiselLemire(w + 1, q) != bits)
+                bits = -1L;
+            if (bits == -1L)
+                return Double.parseDouble(new String(s, from, to - from, StandardCharsets.ISO_8859_1));
+            value = Double.longBitsToDouble(bits);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Computes the bits of the double nearest to w * 10^q for an unsigned w, or returns -1 if the result cannot be
+     * determined from the 128-bit approximation of 5^q.
+     */
+    private static long eiselLemire(long w, int q) {
+        if (w == 0 || q < MIN_POW5)
+            return 0L;
+        if (q > MAX_POW5)
+            return INF_BITS;
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        int index = 2 * (q - MIN_POW5);
+        long hi = unsignedMultiplyHigh(w, POW5[index]);
+        long lo = w * POW5[index];
+        if ((hi & 0x1FFL) == 0x1FFL) { //The lower 9 bits are uncertain, refine with the lower half of 5^q
+            long hi2 = unsignedMultiplyHigh(w, POW5[index + 1]);
+            lo += hi2;
+            if (Long.compareUnsigned(hi2, lo) > 0)
+                ++hi;
+        }
+        if (lo == -1L && (q < -27 || q > 55))
+            return -1L;
+        int upper = (int) (hi >>> 63);
+        long mantissa = hi >>> (upper + 9);
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upper - lz + 1023; //Biased binary exponent
+        if (power2 <= 0) { //Subnormal
+            if (-power2 + 1 >= 64)
+                return 0L;
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1L;
+            mantissa >>>= 1;
+            return mantissa; //A carry into bit 52 yields the smallest normal number
+        }
+        if (Long.compareUnsigned(lo, 1L) <= 0 && q >= -4 && q <= 23 && (mantissa & 3L) == 1L
+                && (mantissa << (upper + 9)) == hi)
+            mantissa &= ~1L; //Exactly halfway, round to even
+        mantissa += mantissa & 1L;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << 52)) {
+            mantissa = 1L << 52;
+            ++power2;
+        }
+        if (power2 >= 0x7FF)
+            return INF_BITS;
+        return (mantissa & ~(1L << 52)) | ((long) power2 << 52);
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * Computes the 128-bit approximations of 5^q for all q from {@code MIN_POW5} to {@code MAX_POW5}, as pairs of
+     * the upper and lower 64 bits. Powers of 5^q with q &lt; 0 are the truncated reciprocals plus one.
+     */
+    private static long[] pow5Table() {
+        long[] table = new long[2 * (MAX_POW5 - MIN_POW5 + 1)];
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE), c, power5;
+        int z;
+        for (int q = MIN_POW5; q <= MAX_POW5; ++q) {
+            if (q < 0) {
+                power5 = BigInteger.valueOf(5).pow(-q);
+                z = power5.bitLength();
+                c = BigInteger.ONE.shiftLeft(q >= -27 ? z + 127 : 2 * z + 128).divide(power5).add(BigInteger.ONE);
+            } else {
+                c = BigInteger.valueOf(5).pow(q);
+            }
+            c = c.bitLength() > 128 ? c.shiftRight(c.bitLength() - 128) : c.shiftLeft(128 - c.bitLength());
+            table[2 * (q - MIN_POW5)] = c.shiftRight(64).longValue();
+            table[2 * (q - MIN_POW5) + 1] = c.and(mask).longValue();
+        }
+        return table;
     }
 
     /**
@@ -166,8 +583,10 @@ public class CSVReader {
      * </p>
      */
     public void close() {
+        if (this.channel == null)
+            return;
         try {
-            this.reader.close();
+            this.channel.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,14 +1,39 @@
-import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
- * An optimized writer for writing to .csv files.
+ * <p>
+ *     An optimized writer for writing to .csv files.
+ * </p>
+ * <p>
+ *     Values are formatted directly into a reusable {@code byte} array, which is written to the file through a
+ *     {@link FileChannel} whenever it is full, on {@link #flush()} and on {@link #close()}. Writing {@code int} and
+ *     {@code double} values does not allocate.
+ * </p>
  */
 public class CSVWriter {
-    private final FileWriter writer;
+    private static final int BLOCK = 1 << 20; //1 MiB
+    private static final int MAX_NUMBER = 32; //Upper bound of the length of a formatted number
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long C_MIN = 1L << 52;
+    private static final int Q_MIN = -1074;
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long[] G = gTable();
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+    private final FileChannel channel;
+    private final byte[] bytes = new byte[BLOCK];
+    private final ByteBuffer block = ByteBuffer.wrap(this.bytes);
+    private final byte[] digits = new byte[20];
+    private int pos = 0;
     private boolean firstValue = false;
-    private String record = "";
 
     /**
      * <p>
@@ -21,12 +46,37 @@ public class CSVWriter {
      */
     public CSVWriter(String path) {
         try {
-            this.writer = new FileWriter(path);
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void ensure(int length) {
+        if (this.pos + length > BLOCK)
+            this.flush();
+    }
+
+    private void write(byte[] b, int off, int len) {
+        int n;
+        while (len > 0) {
+            this.ensure(1);
+            n = Math.min(len, BLOCK - this.pos);
+            System.arraycopy(b, off, this.bytes, this.pos, n);
+            this.pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void separate() {
+        if (this.firstValue)
+            this.firstValue = false;
+        else
+            this.bytes[this.pos++] = ',';
+    }
+
     /**
      * <p>
      *     Write some values separated by commas.
@@ -37,23 +87,27 @@ public class CSVWriter {
      * @param values The values
      */
     public void nextValues(String... values) {
-        this.record += String.join(",", values);
+        byte[] b;
+        for (int i = 0; i < values.length; ++i) {
+            if (i > 0) {
+                this.ensure(1);
+                this.bytes[this.pos++] = ',';
+            }
+            b = values[i].getBytes(StandardCharsets.UTF_8);
+            this.write(b, 0, b.length);
+        }
         this.firstValue = false;
     }
 
     /**
      * <p>
-     *     Writes the current record to the file and starts a new record.
+     *     Ends the current record and starts a new record.
      * </p>
      */
     public void nextRecord() {
-        try {
-            writer.write(this.record + "\n");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        this.ensure(1);
+        this.bytes[this.pos++] = '\n';
         this.firstValue = true;
-        this.record = "";
     }
 
     /**
@@ -63,25 +117,25 @@ public class CSVWriter {
      * @param value The {@code int} value
      */
     public void nextInt(int value) {
-        if (this.firstValue)
-            this.firstValue = false;
-        else
-            this.record += ',';
-        this.record += value;
+        this.ensure(MAX_NUMBER);
+        this.separate();
+        this.writeLong(value);
     }
 
     /**
      * <p>
      *     Writes an {@code double} to the file.
      * </p>
+     * <p>
+     *     The value is written with the shortest decimal that rounds to it, in the format of
+     *     {@link Double#toString(double)}.
+     * </p>
      * @param value The {@code double} value
      */
     public void nextDouble(double value) {
-        if (this.firstValue)
-            this.firstValue = false;
-        else
-            this.record += ',';
-        this.record += value;
+        this.ensure(MAX_NUMBER);
+        this.separate();
+        this.writeDouble(value);
     }
 
     /**
@@ -91,23 +145,241 @@ public class CSVWriter {
      * @param value The {@code BigDecimal} value
      */
     public void nextBigDecimal(BigDecimal value) {
-        if (this.firstValue)
-            this.firstValue = false;
-        else
-            this.record += ',';
-        this.record += value.stripTrailingZeros().toPlainString();
+        this.ensure(1);
+        this.separate();
+        byte[] b = value.stripTrailingZeros().toPlainString().getBytes(StandardCharsets.US_ASCII);
+        this.write(b, 0, b.length);
     }
 
     /**
      * <p>
-     *     Closes the writer.
+     *     Writes all buffered values to the file.
+     * </p>
+     */
+    public void flush() {
+        this.block.clear().limit(this.pos);
+        try {
+            while (this.block.hasRemaining())
+                this.channel.write(this.block);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.pos = 0;
+    }
+
+    /**
+     * <p>
+     *     Writes all buffered values to the file and closes the writer.
      * </p>
      */
     public void close() {
+        this.flush();
         try {
-            this.writer.close();
+            this.channel.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            this.bytes[this.pos++] = '-';
+            value = -value;
+        }
+        int len = this.toDigits(value);
+        System.arraycopy(this.digits, this.digits.length - len, this.bytes, this.pos, len);
+        this.pos += len;
+    }
+
+    /**
+     * Stores the decimal digits of the non-negative {@code value} at the end of the digit array and returns their
+     * count.
+     */
+    private int toDigits(long value) {
+        int i = this.digits.length;
+        do {
+            this.digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return this.digits.length - i;
+    }
+
+    /**
+     * <p>
+     *     Writes the shortest decimal that rounds to {@code v} using the Schubfach algorithm by R. Giulietti.
+     * </p>
+     * <p>
+     *     The decimal c * 2^q is bounded by its rounding interval, which is scaled by 10^-k with a 126-bit
+     *     approximation of the power of ten. The shortest decimal s * 10^k or 10 * s * 10^k inside the interval is
+     *     picked, ties being resolved towards the value closest to v.
+     * </p>
+     */
+    private void writeDouble(double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & (C_MIN - 1);
+        int bq = (int) (bits >>> 52) & 0x7FF;
+        if (bq == 0x7FF) {
+            if (t != 0) {
+                System.arraycopy(NAN, 0, this.bytes, this.pos, NAN.length);
+                this.pos += NAN.length;
+                return;
+            }
+            if (bits < 0)
+                this.bytes[this.pos++] = '-';
+            System.arraycopy(INFINITY, 0, this.bytes, this.pos, INFINITY.length);
+            this.pos += INFINITY.length;
+            return;
+        }
+        if (bits < 0)
+            this.bytes[this.pos++] = '-';
+        if (bq != 0) { //Normal
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < 53) { //Integers are exact
+                long f = c >> mq;
+                if (f << mq == c) {
+                    this.writeDecimal(f, 0);
+                    return;
+                }
+            }
+            this.writeDecimal(-mq, c, 0);
+        } else if (t != 0) { //Subnormal
+            if (t < 3)
+                this.writeDecimal(Q_MIN, 10 * t, -1);
+            else
+                this.writeDecimal(Q_MIN, t, 0);
+        } else {
+            this.bytes[this.pos++] = '0';
+            this.bytes[this.pos++] = '.';
+            this.bytes[this.pos++] = '0';
+        }
+    }
+
+    private void writeDecimal(int q, long c, int dk) {
+        int out = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN | q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else { //The interval is asymmetric at powers of two
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+        long s = vb >> 2;
+        if (s >= 100) { //Try one digit less
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                this.writeDecimal(upin ? sp10 : tp10, k);
+                return;
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            this.writeDecimal(uin ? s : t, k + dk);
+            return;
+        }
+        long cmp = vb - (s + t << 1);
+        this.writeDecimal(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk);
+    }
+
+    /**
+     * Writes f * 10^e in the format of {@link Double#toString(double)}: plain for 10^-3 &lt;= value &lt; 10^7,
+     * computerized scientific notation otherwise.
+     */
+    private void writeDecimal(long f, int e) {
+        int len = this.toDigits(f), start = this.digits.length - len, end = this.digits.length;
+        while (end - start > 1 && this.digits[end - 1] == '0') //Drop trailing zeros
+            --end;
+        int exp = e + len, i; //f * 10^e = 0.d_1...d_len * 10^exp
+        if (0 < exp && exp <= 7) {
+            for (i = 0; i < exp; ++i)
+                this.bytes[this.pos++] = start + i < end ? this.digits[start + i] : (byte) '0';
+            this.bytes[this.pos++] = '.';
+            if (start + exp < end) {
+                for (i = start + exp; i < end; ++i)
+                    this.bytes[this.pos++] = this.digits[i];
+            } else {
+                this.bytes[this.pos++] = '0';
+            }
+        } else if (-3 < exp && exp <= 0) {
+            this.bytes[this.pos++] = '0';
+            this.bytes[this.pos++] = '.';
+            for (i = exp; i < 0; ++i)
+                this.bytes[this.pos++] = '0';
+            for (i = start; i < end; ++i)
+                this.bytes[this.pos++] = this.digits[i];
+        } else {
+            this.bytes[this.pos++] = this.digits[start];
+            this.bytes[this.pos++] = '.';
+            if (start + 1 < end) {
+                for (i = start + 1; i < end; ++i)
+                    this.bytes[this.pos++] = this.digits[i];
+            } else {
+                this.bytes[this.pos++] = '0';
+            }
+            this.bytes[this.pos++] = 'E';
+            this.writeLong(exp - 1);
+        }
+    }
+
+    /**
+     * Computes the rounded-to-odd upper 64 bits of g * cp / 2^63, where g = g1 * 2^63 + g0.
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int flog10pow2(int q) {
+        return (int) (q * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(int q) {
+        return (int) (q * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(int q) {
+        return (int) (q * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * Computes g = floor(10^-k * 2^(125 - floor(log2(10^-k)))) + 1 for all k from {@code K_MIN} to {@code K_MAX},
+     * as pairs of the upper and lower 63 bits.
+     */
+    private static long[] gTable() {
+        long[] table = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger mask = BigInteger.valueOf(MASK_63), num, den, g;
+        int r;
+        for (int k = K_MIN; k <= K_MAX; ++k) {
+            num = k <= 0 ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+            den = k > 0 ? BigInteger.TEN.pow(k) : BigInteger.ONE;
+            r = flog2pow10(-k) - 125;
+            if (r < 0)
+                num = num.shiftLeft(-r);
+            else
+                den = den.shiftLeft(r);
+            g = num.divide(den).add(BigInteger.ONE);
+            table[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            table[2 * (k - K_MIN) + 1] = g.and(mask).longValue();
+        }
+        return table;
+    }
 }
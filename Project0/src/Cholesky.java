@@ -0,0 +1,103 @@
+/**
+ * <p>
+ *     The Cholesky decomposition A = L * L^T of a symmetric positive-definite N x N matrix A.
+ * </p>
+ * <p>
+ *     The decomposition is computed once in O(N^3) and then solves for any number of right-hand sides in
+ *     O(N^2) each, without ever forming the inverse of A.
+ * </p>
+ */
+public class Cholesky {
+    private final int n;
+    private final double[] l;
+
+    /**
+     * <p>
+     *     Decomposes the matrix {@code a}.
+     * </p>
+     * <p>
+     *     Only the lower triangle of {@code a} is read, {@code a} itself is not modified.
+     * </p>
+     * @param a The symmetric positive-definite matrix
+     * @throws RuntimeException If {@code a} is not square or positive-definite
+     */
+    public Cholesky(Matrix a) {
+        if (a.rows() != a.columns())
+            throw new RuntimeException("Matrix is not square");
+        int n = a.rows();
+        double[] l = a.data().clone();
+        int jJ = 0, kK, i;
+        double d, f;
+        for (int j = 0; j < n; ++j, jJ += n) { //jJ is the start of column j
+            d = l[jJ + j];
+            if (!(d > 0d)) //Also catches NaN
+                throw new RuntimeException("Matrix is not positive definite");
+            d = Math.sqrt(d);
+            for (i = 0; i < j; ++i) //Clear the upper triangle
+                l[jJ + i] = 0d;
+            l[jJ + j] = d;
+            d = 1d / d;
+            for (i = j + 1; i < n; ++i) //Scale the column below the diagonal
+                l[jJ + i] *= d;
+            kK = jJ + n;
+            for (int k = j + 1; k < n; ++k, kK += n) { //Update the remaining columns with column j
+                f = l[jJ + k];
+                for (i = k; i < n; ++i)
+                    l[kK + i] -= l[jJ + i] * f;
+            }
+        }
+        this.n = n;
+        this.l = l;
+    }
+
+    /**
+     * Stores the lower triangular factor L into {@code dest}.
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getL(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix is of wrong size");
+        return dest.load(this.l);
+    }
+
+    /**
+     * <p>
+     *     Solves A * X = {@code rhs} for X and stores X in {@code dest}.
+     * </p>
+     * <p>
+     *     Each column of {@code rhs} is solved by a forward and a backward substitution, which both walk the
+     *     columns of L with unit stride.
+     * </p>
+     * @param rhs The N x P right-hand side(s)
+     * @param dest The N x P destination matrix, which may be the same matrix as {@code rhs}
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix solve(Matrix rhs, Matrix dest) {
+        if (rhs.rows() != this.n || dest.rows() != this.n || rhs.columns() != dest.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+        if (dest != rhs)
+            dest.load(rhs.data());
+        double[] x = dest.data();
+        int n = this.n, p = dest.columns(), c, jJ, i, j;
+        double acc;
+        for (int k = 0; k < p; ++k) {
+            c = k * n; //Start of the current right-hand side
+            for (j = 0, jJ = 0; j < n; ++j, jJ += n) { //Solve L * z = b
+                acc = x[c + j] / this.l[jJ + j];
+                x[c + j] = acc;
+                for (i = j + 1; i < n; ++i)
+                    x[c + i] -= this.l[jJ + i] * acc;
+            }
+            for (j = n - 1, jJ = j * n; j >= 0; --j, jJ -= n) { //Solve L^T * x = z
+                acc = x[c + j];
+                for (i = j + 1; i < n; ++i)
+                    acc -= this.l[jJ + i] * x[c + i];
+                x[c + j] = acc / this.l[jJ + j];
+            }
+        }
+        return dest;
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * <p>
+ *     K-fold cross-validation of a linear regression with N features, built on one pass of Gram matrices.
+ * </p>
+ * <p>
+ *     Every row is assigned to one of K folds, and every fold accumulates its own {@link NormalEquations}, i.e.
+ *     X_f^T * X_f, X_f^T * y_f and y_f^T * y_f. The normal equations of the training rows of fold f are the
+ *     total over all folds minus those of fold f, so all K training Gram matrices cost about as much as one
+ *     Gram matrix of all rows. The K systems are solved in parallel by {@link Cholesky} decompositions, and the
+ *     squared error on the held-out rows follows from the fold's own sums without another pass:
+ *     ||X_f * w - y_f||^2 = y_f^T * y_f - 2 * w^T * X_f^T * y_f + w^T * X_f^T * X_f * w.
+ * </p>
+ * <p>
+ *     The error is computed from sums of squares, which may lose digits to cancellation if the model fits the
+ *     held-out rows almost exactly. It is therefore clamped at zero.
+ * </p>
+ */
+public class CrossValidation {
+    private final int n;
+    private final int k;
+    private final NormalEquations[] folds;
+    private long next = 0; //Rows added round-robin
+
+    /**
+     * Creates a new empty cross-validation.
+     * @param n The number of features
+     * @param k The number of folds, at least 2
+     * @param batchSize The number of rows per batch of each fold's {@link NormalEquations}
+     * @throws RuntimeException If there are fewer than 2 folds
+     */
+    public CrossValidation(int n, int k, int batchSize) {
+        if (k < 2)
+            throw new RuntimeException("Cross-validation needs at least 2 folds");
+        this.n = n;
+        this.k = k;
+        this.folds = new NormalEquations[k];
+        for (int f = 0; f < k; ++f)
+            this.folds[f] = new NormalEquations(n, batchSize);
+    }
+
+    /**
+     * @return The number of folds
+     */
+    public int folds() {
+        return this.k;
+    }
+
+    /**
+     * @param fold The fold
+     * @return The normal equations accumulated for the held-out rows of {@code fold}
+     */
+    public NormalEquations getFold(int fold) {
+        return this.folds[fold];
+    }
+
+    /**
+     * Adds a row to the fold {@code fold}.
+     * @param fold The fold
+     * @param x The N feature values of the row
+     * @param y The target value of the row
+     */
+    public void add(int fold, double[] x, double y) {
+        this.folds[fold].add(x, y);
+    }
+
+    /**
+     * Adds a row to the next fold, i.e. the i-th row added by this method or {@link #read(CSVReader)} to fold
+     * i mod K. Rows added to explicit folds do not count.
+     * @param x The N feature values of the row
+     * @param y The target value of the row
+     */
+    public void add(double[] x, double y) {
+        this.folds[(int) (this.next++ % this.k)].add(x, y);
+    }
+
+    /**
+     * <p>
+     *     Adds all remaining records of {@code rdr} to the next folds, like {@link #add(double[], double)}.
+     * </p>
+     * <p>
+     *     Each record consists of an id, the target value and the N feature values, as in train.csv.
+     * </p>
+     * @param rdr The reader
+     * @return The number of records read
+     */
+    public long read(CSVReader rdr) {
+        double[] x = new double[this.n];
+        double y;
+        long records = 0;
+        while (rdr.hasNext()) {
+            rdr.nextInt(); //Skip the id
+            y = rdr.nextDouble();
+            for (int j = 0; j < this.n; ++j)
+                x[j] = rdr.nextDouble();
+            this.add(x, y);
+            ++records;
+        }
+        return records;
+    }
+
+    /**
+     * Computes the root-mean-square error of the least-squares weights on the held-out rows of every fold.
+     * @param pool The pool solving the folds
+     * @return The K errors, NaN for an empty fold
+     * @throws RuntimeException If the training Gram matrix of any fold is not positive-definite
+     */
+    public double[] rmse(ForkJoinPool pool) {
+        return this.rmse(0d, pool);
+    }
+
+    /**
+     * <p>
+     *     Computes the root-mean-square error of the ridge regression weights with the regularization parameter
+     *     {@code lambda} on the held-out rows of every fold.
+     * </p>
+     * <p>
+     *     The training normal equations of each fold are formed by subtraction, {@code lambda} is added to the
+     *     diagonal, and the K systems are solved as separate tasks in {@code pool}.
+     * </p>
+     * @param lambda The regularization parameter, 0 for least squares
+     * @param pool The pool solving the folds
+     * @return The K errors, NaN for an empty fold
+     * @throws RuntimeException If the training Gram matrix of any fold is not positive-definite
+     */
+    public double[] rmse(double lambda, ForkJoinPool pool) {
+        Matrix[] grams = new Matrix[this.k];
+        Matrix[] moments = new Matrix[this.k];
+        double[] yty = new double[this.k];
+        Matrix gram = new Matrix(this.n, this.n);
+        Matrix moment = new Matrix(this.n, 1);
+        for (int f = 0; f < this.k; ++f) { //Flush the folds on this thread and sum them up
+            grams[f] = this.folds[f].getGram(new Matrix(this.n, this.n));
+            moments[f] = this.folds[f].getMoment(new Matrix(this.n, 1));
+            yty[f] = this.folds[f].getSumOfSquares();
+            gram.add(grams[f]);
+            moment.add(moments[f]);
+        }
+        double[] rmse = new double[this.k];
+        List<ForkJoinTask<?>> solves = new ArrayList<>();
+        for (int f = 0; f < this.k; ++f) {
+            int fold = f;
+            solves.add(pool.submit(() -> {
+                Matrix w = this.weights(gram, moment, grams[fold], moments[fold], lambda);
+                double sse = yty[fold] - 2d * w.dot(moments[fold])
+                        + w.dot(grams[fold].mul(w, new Matrix(this.n, 1)));
+                rmse[fold] = Math.sqrt(Math.max(0d, sse) / this.folds[fold].getCount());
+            }));
+        }
+        for (ForkJoinTask<?> solve : solves)
+            solve.join();
+        return rmse;
+    }
+
+    /**
+     * Computes the weights of the fold {@code fold}, trained on the rows of all other folds, and stores them in
+     * {@code dest}.
+     * @param fold The fold
+     * @param lambda The regularization parameter, 0 for least squares
+     * @param dest The N x 1 destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If the training Gram matrix is not positive-definite
+     */
+    public Matrix weights(int fold, double lambda, Matrix dest) {
+        Matrix gram = new Matrix(this.n, this.n);
+        Matrix moment = new Matrix(this.n, 1);
+        for (NormalEquations equations : this.folds) {
+            gram.add(equations.getGram(new Matrix(this.n, this.n)));
+            moment.add(equations.getMoment(new Matrix(this.n, 1)));
+        }
+        Matrix w = this.weights(gram, moment, this.folds[fold].getGram(new Matrix(this.n, this.n)),
+                this.folds[fold].getMoment(new Matrix(this.n, 1)), lambda);
+        return dest.load(w.data());
+    }
+
+    /**
+     * Solves the normal equations of the total {@code gram} and {@code moment} without the fold's
+     * {@code foldGram} and {@code foldMoment}, with {@code lambda} added to the diagonal.
+     */
+    private Matrix weights(Matrix gram, Matrix moment, Matrix foldGram, Matrix foldMoment, double lambda) {
+        Matrix train = gram.sub(foldGram, new Matrix(this.n, this.n));
+        double[] data = train.data();
+        for (int i = 0; i < data.length; i += this.n + 1)
+            data[i] += lambda;
+        return new Cholesky(train).solve(moment.sub(foldMoment, new Matrix(this.n, 1)), new Matrix(this.n, 1));
+    }
+}
@@ -0,0 +1,382 @@
+//Generated by Project0/gen/Generate.java from PrimitiveMatrix.java.template, do not edit
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     An M x N matrix with entries of type {@code int}, e.g. for counts and one-hot encoded categorical features.
+ * </p>
+ * <p>
+ *     The entries are stored in column-major order, like in {@link Matrix}. Products are accumulated in
+ *     {@code double} and stored into a {@link Matrix}, so only the storage is of type {@code int}.
+ * </p>
+ */
+public class IntMatrix {
+    private static final int ROW_TILE = 256;
+    private static final int L2_ELEMENTS = (256 * 1024) / Integer.BYTES; //256 KiB
+    private static final BufferPool<int[]> bufs = new BufferPool<>(int[]::new, b -> b.length, Integer.BYTES, 16L << 20);
+    private final int m;
+    private final int n;
+    private final int mn;
+    private final int[] data;
+
+    /**
+     * <p>
+     *     Creates a new M x N matrix with the backing data array in column-major order.
+     * </p>
+     * <p>
+     *     The data array is copied by reference and NOT cloned.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @param data The backing data array in column-major order
+     * @throws RuntimeException If the data size does not match the dimensions
+     */
+    public IntMatrix(int m, int n, int[] data) {
+        int mn = m * n;
+        if (data.length != mn)
+            throw new RuntimeException("Wrong data size");
+        this.m = m;
+        this.n = n;
+        this.mn = mn;
+        this.data = data;
+    }
+
+    /**
+     * <p>
+     *     Creates a new M x N zero-initialized matrix.
+     * </p>
+     * <p>
+     *     This method allocates a data buffer.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     */
+    public IntMatrix(int m, int n) {
+        this(m, n, new int[m * n]);
+    }
+
+    /**
+     * <p>
+     *     Returns the pool of temporary buffers shared by all matrices of this type.
+     * </p>
+     * <p>
+     *     The pool is thread-safe. Its capacity may be configured and its counters inspected.
+     * </p>
+     * @return The buffer pool
+     */
+    public static BufferPool<int[]> getBufferPool() {
+        return bufs;
+    }
+
+    private static void pushBuf(int[] buf, IntMatrix mat) {
+        System.arraycopy(buf, 0, mat.data, 0, mat.mn);
+        bufs.push(buf);
+    }
+
+    private static int narrow(double value) {
+        return (int) Math.rint(value);
+    }
+
+    private static void assertSameSize(IntMatrix a, IntMatrix b) {
+        if (a.m != b.m || a.n != b.n)
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertSameSize(IntMatrix a, Matrix b) {
+        if (a.m != b.rows() || a.n != b.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertTransposedSize(IntMatrix a, IntMatrix b) {
+        if (a.m != b.n || a.n != b.m)
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertProductOf(IntMatrix a, int rows, int columns, Matrix c) {
+        if (a.n != rows)
+            throw new RuntimeException("Matrices do not agree in width / height");
+        if (c.rows() != a.m || c.columns() != columns)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+    }
+
+    /**
+     * <p>
+     *     Creates a textual representation of {@code this}.
+     * </p>
+     * @return String with the elements of {@code this}
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        int index;
+        for (int i = 0; i < this.m; ++i) {
+            index = i;
+            for (int j = 0; j < this.n; ++j) {
+                str.append(String.format("%d ", this.data[index]));
+                index += this.m;
+            }
+            str.append('\n');
+        }
+        return str.toString();
+    }
+
+    /**
+     * @return The row count of {@code this}
+     */
+    public int rows() {
+        return this.m;
+    }
+
+    /**
+     * @return The column count of {@code this}
+     */
+    public int columns() {
+        return this.n;
+    }
+
+    /**
+     * @return The backing data array in column-major order (not copied)
+     */
+    int[] data() {
+        return this.data;
+    }
+
+    /**
+     * Loads data into {@code this}.
+     * @param data The data (copied)
+     * @return {@code this}
+     */
+    public IntMatrix load(int[] data) {
+        System.arraycopy(data, 0, this.data, 0, this.mn);
+        return this;
+    }
+
+    /**
+     * Loads the entries of {@code src} into {@code this}, rounded to the nearest integer and saturated at the bounds of {@code int}.
+     * @param src The matrix of the same size
+     * @return {@code this}
+     * @throws RuntimeException If {@code src} does not have the proper dimensions
+     */
+    public IntMatrix load(Matrix src) {
+        assertSameSize(this, src);
+        double[] s = src.data();
+        for (int i = 0; i < this.mn; ++i)
+            this.data[i] = narrow(s[i]);
+        return this;
+    }
+
+    /**
+     * Stores the entries of {@code this} into {@code dest}, converted to {@code double}.
+     * @param dest The destination matrix of the same size
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} does not have the proper dimensions
+     */
+    public Matrix toMatrix(Matrix dest) {
+        assertSameSize(this, dest);
+        double[] d = dest.data();
+        for (int i = 0; i < this.mn; ++i)
+            d[i] = this.data[i];
+        return dest;
+    }
+
+    /**
+     * Computes the dot product of {@code this} and {@code other}, accumulated in {@code double}.
+     * @param other The other matrix
+     * @return The dot product
+     */
+    public double dot(IntMatrix other) {
+        assertSameSize(this, other);
+        double value = 0;
+        for (int i = 0; i < this.mn; ++i)
+            value += (double) this.data[i] * other.data[i];
+        return value;
+    }
+
+    /**
+     * Computes the dot product of {@code this} and {@code other}, accumulated in {@code double}.
+     * @param other The other matrix
+     * @return The dot product
+     */
+    public double dot(Matrix other) {
+        assertSameSize(this, other);
+        double[] o = other.data();
+        double value = 0;
+        for (int i = 0; i < this.mn; ++i)
+            value += this.data[i] * o[i];
+        return value;
+    }
+
+    /**
+     * <p>
+     *     Turns {@code this} into an identity matrix.
+     * </p>
+     * <p>
+     *     Additional rows or columns after the upper left block are zeroed.
+     * </p>
+     * @return {@code this}
+     */
+    public IntMatrix identity() {
+        Arrays.fill(this.data, 0);
+        int min = Math.min(this.m, this.n), index = 0;
+        for (int i = 0; i < min; ++i, index += this.m + 1)
+            this.data[index] = 1;
+        return this;
+    }
+
+    /**
+     * Adds {@code other} to {@code this} and stores the result in {@code dest}.
+     * @param other The right operand of the addition
+     * @param dest The destination matrix, which may be the same matrix as {@code this} or {@code other}
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public IntMatrix add(IntMatrix other, IntMatrix dest) {
+        assertSameSize(this, other);
+        assertSameSize(other, dest);
+        for (int i = 0; i < this.mn; ++i)
+            dest.data[i] = this.data[i] + other.data[i];
+        return dest;
+    }
+
+    /**
+     * Adds {@code other} to {@code this} and stores the result in {@code this}.
+     * @param other The right operand of the addition
+     * @return {@code this}
+     * @throws RuntimeException If {@code other} does not have the proper dimensions
+     */
+    public IntMatrix add(IntMatrix other) {
+        return this.add(other, this);
+    }
+
+    /**
+     * Stores the transposed version of {@code this} into {@code dest}.
+     * @param dest The destination matrix, which may be the same matrix as {@code this} or share its data
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public IntMatrix transpose(IntMatrix dest) {
+        assertTransposedSize(this, dest);
+        int[] buf = dest.data == this.data ? bufs.pop(this.mn) : dest.data; //Even if dest is not this
+        for (int j = 0; j < this.n; ++j) //Read this column by column, write dest row by row
+            for (int i = 0, destIndex = j; i < this.m; ++i, destIndex += this.n)
+                buf[destIndex] = this.data[j * this.m + i];
+        if (dest.data == this.data)
+            pushBuf(buf, dest);
+        return dest;
+    }
+
+    /**
+     * Multiplies {@code this} with {@code other} and stores the result in {@code dest}, accumulated in {@code double}.
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix mul(IntMatrix other, Matrix dest) {
+        assertProductOf(this, other.m, other.n, dest);
+        this.mulKernel(other.data, other.n, dest.data());
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}, accumulated in
+     *     {@code double}.
+     * </p>
+     * <p>
+     *     This scores the rows of {@code this} with the weights {@code other} without converting the entries of
+     *     {@code this}.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix, which may be the same matrix as {@code other}
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix mul(Matrix other, Matrix dest) {
+        assertProductOf(this, other.rows(), other.columns(), dest);
+        int size = this.m * other.columns();
+        double[] c = dest == other ? Matrix.getBufferPool().pop(size) : dest.data();
+        this.mulKernel(other.data(), other.columns(), c);
+        if (dest == other) {
+            System.arraycopy(c, 0, dest.data(), 0, size);
+            Matrix.getBufferPool().push(c);
+        }
+        return dest;
+    }
+
+    /**
+     * Stores X^T * X into {@code dest}, where X is {@code this}, accumulated in {@code double}.
+     * @param dest The N x N destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix gram(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+        int m = this.m, n = this.n, chunk = Math.max(64, L2_ELEMENTS / Math.max(1, n)), iI, jJ, r1;
+        double[] g = dest.data();
+        double acc;
+        Arrays.fill(g, 0d);
+        for (int r0 = 0; r0 < m; r0 += chunk) { //Row chunks of X stay in cache while all pairs of columns are formed
+            r1 = Math.min(m, r0 + chunk);
+            for (int j = 0; j < n; ++j) {
+                jJ = j * m;
+                for (int i = 0; i <= j; ++i) {
+                    iI = i * m;
+                    acc = 0d;
+                    for (int r = r0; r < r1; ++r)
+                        acc += (double) this.data[iI + r] * this.data[jJ + r];
+                    g[i + j * n] += acc;
+                }
+            }
+        }
+        for (int j = 0; j < n; ++j) //Mirror the upper triangle
+            for (int i = j + 1; i < n; ++i)
+                g[i + j * n] = g[j + i * n];
+        return dest;
+    }
+
+    /**
+     * Computes C = A * B into the column-major M x P array {@code c}, where A is {@code this} and B is the N x P
+     * array {@code b}. Each entry sums its products in ascending order of k.
+     */
+    private void mulKernel(int[] b, int p, double[] c) {
+        int m = this.m, n = this.n, i1, kK, cC;
+        double bkj;
+        Arrays.fill(c, 0, m * p, 0d);
+        for (int i0 = 0; i0 < m; i0 += ROW_TILE) { //A block of rows of C stays in cache across k
+            i1 = Math.min(m, i0 + ROW_TILE);
+            for (int j = 0; j < p; ++j) {
+                cC = j * m;
+                for (int k = 0; k < n; ++k) {
+                    bkj = b[k + j * n];
+                    kK = k * m;
+                    for (int i = i0; i < i1; ++i)
+                        c[cC + i] += this.data[kK + i] * bkj;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes C = A * B into the column-major M x P array {@code c}, where A is {@code this} and B is the N x P
+     * array {@code b}. Each entry sums its products in ascending order of k.
+     */
+    private void mulKernel(double[] b, int p, double[] c) {
+        int m = this.m, n = this.n, i1, kK, cC;
+        double bkj;
+        Arrays.fill(c, 0, m * p, 0d);
+        for (int i0 = 0; i0 < m; i0 += ROW_TILE) { //A block of rows of C stays in cache across k
+            i1 = Math.min(m, i0 + ROW_TILE);
+            for (int j = 0; j < p; ++j) {
+                cC = j * m;
+                for (int k = 0; k < n; ++k) {
+                    bkj = b[k + j * n];
+                    kK = k * m;
+                    for (int i = i0; i < i1; ++i)
+                        c[cC + i] += this.data[kK + i] * bkj;
+                }
+            }
+        }
+    }
+}
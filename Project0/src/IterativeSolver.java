@@ -0,0 +1,262 @@
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ *     An iterative least-squares solver for a linear regression with N features, which streams the data from
+ *     .csv files instead of forming X^T * X.
+ * </p>
+ * <p>
+ *     Every pass over the data reads the records of a fresh {@link CSVReader} in batches of fixed size into a
+ *     column-major matrix and only computes matrix-vector products with it, so the memory used is
+ *     O(batch size * N) and one iteration costs O(rows * N). Each record consists of an id, the target value and
+ *     the N feature values, as in train.csv.
+ * </p>
+ * <p>
+ *     {@link #conjugateGradient} solves the normal equations X^T * X * w = X^T * y by the conjugate gradient
+ *     method applied to them (CGNR), which forms X^T * (X * p) in one pass per iteration and converges in at most
+ *     N iterations in exact arithmetic. {@link #sgd} runs mini-batch stochastic gradient descent with one update
+ *     per batch. Both start from the weights passed in, so a previous solution can be refined after the data
+ *     changed.
+ * </p>
+ */
+public class IterativeSolver {
+    private final int n;
+    private final int batchSize;
+    private final Matrix batchX;
+    private final Matrix batchY;
+    private final Matrix batchXw;
+    private final Matrix batchXt;
+    private final double[] xData;
+    private final double[] yData;
+    private double tolerance = 1e-10;
+    private int maxIterations = 1000;
+    private int iterations = 0;
+    private double residual = Double.NaN;
+
+    /**
+     * Creates a new solver.
+     * @param n The number of features
+     * @param batchSize The number of rows per batch
+     */
+    public IterativeSolver(int n, int batchSize) {
+        this.n = n;
+        this.batchSize = batchSize;
+        this.batchX = new Matrix(batchSize, n);
+        this.batchY = new Matrix(batchSize, 1);
+        this.batchXw = new Matrix(batchSize, 1);
+        this.batchXt = new Matrix(n, 1);
+        this.xData = this.batchX.data();
+        this.yData = this.batchY.data();
+    }
+
+    /**
+     * @return The relative tolerance at which the iteration stops
+     */
+    public double getTolerance() {
+        return this.tolerance;
+    }
+
+    /**
+     * Sets the relative tolerance at which the iteration stops. For {@link #conjugateGradient} it bounds the
+     * norm of the residual X^T * (y - X * w) relative to the larger of the norms of X^T * y and of the initial
+     * residual, for {@link #sgd} the norm of the change of w in one epoch relative to the larger of the norms of
+     * w before and after the epoch.
+     * @param tolerance The tolerance, 1e-10 by default
+     * @return {@code this}
+     */
+    public IterativeSolver setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of iterations (or epochs)
+     */
+    public int getMaxIterations() {
+        return this.maxIterations;
+    }
+
+    /**
+     * Sets the maximum number of iterations of {@link #conjugateGradient} or epochs of {@link #sgd}.
+     * @param maxIterations The maximum, 1000 by default
+     * @return {@code this}
+     */
+    public IterativeSolver setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * @return The number of iterations (or epochs) of the last solve
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * @return The relative residual (or change) at the end of the last solve
+     */
+    public double getResidual() {
+        return this.residual;
+    }
+
+    /**
+     * <p>
+     *     Solves the normal equations of the records of {@code data} by the conjugate gradient method.
+     * </p>
+     * <p>
+     *     The first pass computes the residual X^T * (y - X * w) of the initial weights, every further pass one
+     *     product X^T * X * p. The iteration stops when the relative residual is at most the tolerance, when the
+     *     maximum number of iterations is reached or when X^T * X is singular in the search direction.
+     * </p>
+     * @param data Creates a reader positioned at the first record for every pass, e.g. after the column headers
+     * @param w The N x 1 initial weights (e.g. zero or a previous solution), which receive the solution
+     * @return {@code w}
+     * @throws RuntimeException If {@code w} does not have the proper dimensions
+     */
+    public Matrix conjugateGradient(Supplier<CSVReader> data, Matrix w) {
+        this.assertWeights(w);
+        int n = this.n;
+        double[] x = w.data();
+        double[] r = new double[n];
+        double[] xty = new double[n];
+        double[] p = new double[n];
+        double[] q = new double[n];
+        this.pass(data, x, r, xty); //r = X^T * y - X^T * X * w
+        for (int j = 0; j < n; ++j)
+            r[j] = xty[j] - r[j];
+        double gamma = dot(r, r), alpha, curvature, next;
+        double norm = Math.sqrt(Math.max(dot(xty, xty), gamma)); //A warm start may be far off even if X^T * y is 0
+        System.arraycopy(r, 0, p, 0, n);
+        this.iterations = 0;
+        this.residual = norm > 0d ? Math.sqrt(gamma) / norm : 0d;
+        while (this.residual > this.tolerance && this.iterations < this.maxIterations) {
+            this.pass(data, p, q, null); //q = X^T * X * p
+            curvature = dot(p, q);
+            if (!(curvature > 0d)) //Singular in the search direction
+                break;
+            alpha = gamma / curvature;
+            for (int j = 0; j < n; ++j) {
+                x[j] += alpha * p[j];
+                r[j] -= alpha * q[j];
+            }
+            next = dot(r, r);
+            for (int j = 0; j < n; ++j)
+                p[j] = r[j] + next / gamma * p[j];
+            gamma = next;
+            ++this.iterations;
+            this.residual = Math.sqrt(gamma) / norm;
+        }
+        return w;
+    }
+
+    /**
+     * <p>
+     *     Fits the weights to the records of {@code data} by mini-batch stochastic gradient descent.
+     * </p>
+     * <p>
+     *     Every batch of b rows updates w by -{@code learningRate} / b * X_b^T * (X_b * w - y_b). An epoch is one
+     *     pass over the data, and the iteration stops when the change of w in an epoch is at most the tolerance
+     *     relative to w or when the maximum number of epochs is reached. The learning rate must be small compared
+     *     to the inverse of the largest eigenvalue of X^T * X / rows for the iteration to converge.
+     * </p>
+     * @param data Creates a reader positioned at the first record for every epoch, e.g. after the column headers
+     * @param learningRate The step size
+     * @param w The N x 1 initial weights (e.g. zero or a previous solution), which receive the solution
+     * @return {@code w}
+     * @throws RuntimeException If {@code w} does not have the proper dimensions or if the iteration diverges
+     */
+    public Matrix sgd(Supplier<CSVReader> data, double learningRate, Matrix w) {
+        this.assertWeights(w);
+        double[] x = w.data();
+        double[] g = this.batchXt.data();
+        double[] xw = this.batchXw.data();
+        double[] start = new double[this.n];
+        double change;
+        int rows;
+        this.iterations = 0;
+        this.residual = Double.POSITIVE_INFINITY;
+        while (this.residual > this.tolerance && this.iterations < this.maxIterations) {
+            System.arraycopy(x, 0, start, 0, this.n);
+            CSVReader rdr = data.get();
+            try {
+                while ((rows = this.nextBatch(rdr)) > 0) {
+                    this.batchX.mul(w, this.batchXw);
+                    for (int i = 0; i < rows; ++i) //Zero rows do not contribute to the gradient
+                        xw[i] -= this.yData[i];
+                    this.batchX.transposeMul(this.batchXw, this.batchXt);
+                    for (int j = 0; j < this.n; ++j)
+                        x[j] -= learningRate / rows * g[j];
+                }
+            } finally {
+                rdr.close();
+            }
+            change = 0d;
+            for (int j = 0; j < this.n; ++j)
+                change += (x[j] - start[j]) * (x[j] - start[j]);
+            ++this.iterations;
+            this.residual = change > 0d ? Math.sqrt(change / Math.max(dot(x, x), dot(start, start))) : 0d;
+            if (!Double.isFinite(change))
+                throw new RuntimeException("Iteration diverges, the learning rate is too large");
+        }
+        return w;
+    }
+
+    private void assertWeights(Matrix w) {
+        if (w.rows() != this.n || w.columns() != 1)
+            throw new RuntimeException("Matrix is of wrong size");
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return Kernels.get().dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Computes X^T * X * {@code v} into {@code dest} and, unless {@code xty} is {@code null}, X^T * y into
+     * {@code xty} in one pass over the records of a reader from {@code data}.
+     */
+    private void pass(Supplier<CSVReader> data, double[] v, double[] dest, double[] xty) {
+        Matrix vec = new Matrix(this.n, 1, v);
+        double[] t = this.batchXt.data();
+        Arrays.fill(dest, 0d);
+        if (xty != null)
+            Arrays.fill(xty, 0d);
+        CSVReader rdr = data.get();
+        try {
+            while (this.nextBatch(rdr) > 0) {
+                this.batchX.mul(vec, this.batchXw);
+                this.batchX.transposeMul(this.batchXw, this.batchXt);
+                for (int j = 0; j < this.n; ++j)
+                    dest[j] += t[j];
+                if (xty != null) {
+                    this.batchX.transposeMul(this.batchY, this.batchXt);
+                    for (int j = 0; j < this.n; ++j)
+                        xty[j] += t[j];
+                }
+            }
+        } finally {
+            rdr.close();
+        }
+    }
+
+    /**
+     * Reads up to a batch of records from {@code rdr}, zeroes the remaining rows of the batch and returns the
+     * number of records read.
+     */
+    private int nextBatch(CSVReader rdr) {
+        int rows = 0;
+        for (; rows < this.batchSize && rdr.hasNext(); ++rows) {
+            rdr.nextInt(); //Skip the id
+            this.yData[rows] = rdr.nextDouble();
+            for (int j = 0, index = rows; j < this.n; ++j, index += this.batchSize)
+                this.xData[index] = rdr.nextDouble();
+        }
+        if (rows < this.batchSize) {
+            for (int j = 0; j < this.n; ++j) //Zero rows do not contribute to the products
+                Arrays.fill(this.xData, j * this.batchSize + rows, (j + 1) * this.batchSize, 0d);
+            Arrays.fill(this.yData, rows, this.batchSize, 0d);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * <p>
+ *     The innermost loops of the dense {@code double} kernels, over contiguous array segments.
+ * </p>
+ * <p>
+ *     This class is the scalar implementation. If the {@code jdk.incubator.vector} module is available, i.e. the
+ *     JVM was started with {@code --add-modules jdk.incubator.vector}, and the class {@code VectorKernels} of the
+ *     source folder Project0/vector is on the class path, {@link #get()} returns that SIMD implementation instead,
+ *     which uses the widest vector species of the processor. Setting the system property {@code iml.scalar} to
+ *     {@code true} forces the scalar implementation.
+ * </p>
+ * <p>
+ *     {@link #axpy} and {@link #axpy4} compute every element with a separate multiplication and addition in
+ *     both implementations, so their results do not depend on the implementation. {@link #dot} may sum in a
+ *     different order when vectorized.
+ * </p>
+ */
+public class Kernels {
+    private static final Kernels KERNELS = load();
+
+    protected Kernels() {
+    }
+
+    private static Kernels load() {
+        if (Boolean.getBoolean("iml.scalar"))
+            return new Kernels();
+        try {
+            return (Kernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) { //Not compiled or module not available
+            return new Kernels();
+        }
+    }
+
+    /**
+     * @return The kernels used by all matrices
+     */
+    public static Kernels get() {
+        return KERNELS;
+    }
+
+    /**
+     * @return A description of the implementation
+     */
+    @Override
+    public String toString() {
+        return "Scalar kernels";
+    }
+
+    /**
+     * Computes the dot product of {@code a[aOff:aOff+len]} and {@code b[bOff:bOff+len]}.
+     */
+    public double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        double acc = 0d;
+        for (int i = 0; i < len; ++i)
+            acc += a[aOff + i] * b[bOff + i];
+        return acc;
+    }
+
+    /**
+     * Adds {@code alpha * x[xOff:xOff+len]} to {@code y[yOff:yOff+len]}.
+     */
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        for (int i = 0; i < len; ++i)
+            y[yOff + i] += x[xOff + i] * alpha;
+    }
+
+    /**
+     * Adds {@code x[xOff:xOff+len]} multiplied with {@code f0} to {@code f3} to the four segments of {@code c}
+     * starting at {@code c0} to {@code c3}, reading {@code x} once.
+     */
+    public void axpy4(double[] x, int xOff, double f0, double f1, double f2, double f3,
+                      double[] c, int c0, int c1, int c2, int c3, int len) {
+        double v;
+        for (int i = 0; i < len; ++i) {
+            v = x[xOff + i];
+            c[c0 + i] += v * f0;
+            c[c1 + i] += v * f1;
+            c[c2 + i] += v * f2;
+            c[c3 + i] += v * f3;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     The LU decomposition P * A = L * U of a square N x N matrix A with partial pivoting.
+ * </p>
+ * <p>
+ *     In every column the entry of largest magnitude on or below the diagonal becomes the pivot, so all entries
+ *     of L are at most 1 in magnitude. The decomposition is computed once in O(N^3) and then solves for any
+ *     number of right-hand sides in O(N^2) each.
+ * </p>
+ * <p>
+ *     L (with an implicit unit diagonal) is stored below the diagonal and U on and above it, as in LAPACK. A is
+ *     treated as singular if a pivot is at most N units in the last place of the largest entry of A, which
+ *     does not depend on the scale of A.
+ * </p>
+ */
+public class LU {
+    private static final Kernels KERNELS = Kernels.get();
+    private final int n;
+    private final double[] lu;
+    private final int[] piv;
+    private final boolean singular;
+    private final double norm;
+    private final int sign;
+
+    /**
+     * <p>
+     *     Decomposes the matrix {@code a}.
+     * </p>
+     * <p>
+     *     {@code a} itself is not modified. A singular matrix is decomposed as well, see {@link #isSingular()}.
+     * </p>
+     * @param a The square matrix
+     * @throws RuntimeException If {@code a} is not square
+     */
+    public LU(Matrix a) {
+        if (a.rows() != a.columns())
+            throw new RuntimeException("Matrix is not square");
+        int n = a.rows();
+        double[] lu = a.data().clone();
+        int[] piv = new int[n];
+        int sign = 1, kK = 0, jJ, p, i;
+        double max = 0d, norm = 0d, col, d, f;
+        for (int j = 0; j < n; ++j) { //Largest entry and 1-norm of A
+            col = 0d;
+            for (i = 0; i < n; ++i) {
+                d = Math.abs(lu[kK++]);
+                max = Math.max(max, d);
+                col += d;
+            }
+            norm = Math.max(norm, col);
+        }
+        double tol = n * Math.ulp(max);
+        boolean singular = false;
+        kK = 0;
+        for (int k = 0; k < n; ++k, kK += n) { //kK is the start of column k
+            p = k;
+            for (i = k + 1; i < n; ++i) //Choose the largest pivot of the column
+                if (Math.abs(lu[kK + i]) > Math.abs(lu[kK + p]))
+                    p = i;
+            piv[k] = p;
+            if (p != k) { //Swap the whole rows
+                sign = -sign;
+                for (jJ = 0; jJ < n * n; jJ += n) {
+                    d = lu[jJ + k];
+                    lu[jJ + k] = lu[jJ + p];
+                    lu[jJ + p] = d;
+                }
+            }
+            d = lu[kK + k];
+            if (!(Math.abs(d) > tol)) { //Also catches NaN, leave the column as is
+                singular = true;
+                continue;
+            }
+            d = 1d / d;
+            for (i = k + 1; i < n; ++i) //Scale the column below the pivot
+                lu[kK + i] *= d;
+            for (jJ = kK + n; jJ < n * n; jJ += n) { //Update the remaining columns with column k
+                f = lu[jJ + k];
+                if (f != 0d)
+                    KERNELS.axpy(-f, lu, kK + k + 1, lu, jJ + k + 1, n - k - 1);
+            }
+        }
+        this.n = n;
+        this.lu = lu;
+        this.piv = piv;
+        this.singular = singular;
+        this.norm = norm;
+        this.sign = sign;
+    }
+
+    /**
+     * @return Whether A is (numerically) singular, in which case it cannot be solved or inverted
+     */
+    public boolean isSingular() {
+        return this.singular;
+    }
+
+    /**
+     * @return The row permutation P as the row of A that ends up in each row of L * U
+     */
+    public int[] getPivot() {
+        int[] rows = new int[this.n];
+        int temp;
+        for (int i = 0; i < this.n; ++i)
+            rows[i] = i;
+        for (int k = 0; k < this.n; ++k) {
+            temp = rows[k];
+            rows[k] = rows[this.piv[k]];
+            rows[this.piv[k]] = temp;
+        }
+        return rows;
+    }
+
+    /**
+     * Stores the unit lower triangular factor L into {@code dest}.
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getL(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix is of wrong size");
+        double[] l = dest.load(this.lu).data();
+        for (int j = 0, jJ = 0; j < this.n; ++j, jJ += this.n) {
+            for (int i = 0; i < j; ++i)
+                l[jJ + i] = 0d;
+            l[jJ + j] = 1d;
+        }
+        return dest;
+    }
+
+    /**
+     * Stores the upper triangular factor U into {@code dest}.
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getU(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix is of wrong size");
+        double[] u = dest.load(this.lu).data();
+        for (int j = 0, jJ = 0; j < this.n; ++j, jJ += this.n)
+            for (int i = j + 1; i < this.n; ++i)
+                u[jJ + i] = 0d;
+        return dest;
+    }
+
+    /**
+     * @return The determinant of A, i.e. the product of the pivots with the sign of P
+     */
+    public double determinant() {
+        double det = this.sign;
+        for (int j = 0; j < this.n; ++j)
+            det *= this.lu[j * (this.n + 1)];
+        return det;
+    }
+
+    /**
+     * <p>
+     *     Solves A * X = {@code rhs} for X and stores X in {@code dest}.
+     * </p>
+     * <p>
+     *     Each column of {@code rhs} is permuted and then solved by a forward and a backward substitution, which
+     *     both walk the columns of L and U with unit stride.
+     * </p>
+     * @param rhs The N x P right-hand side(s)
+     * @param dest The N x P destination matrix, which may be the same matrix as {@code rhs}
+     * @return {@code dest}
+     * @throws RuntimeException If A is singular or if any matrix does not have the proper dimensions
+     */
+    public Matrix solve(Matrix rhs, Matrix dest) {
+        if (rhs.rows() != this.n || dest.rows() != this.n || rhs.columns() != dest.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+        if (this.singular)
+            throw new RuntimeException("Matrix is singular");
+        if (dest != rhs)
+            dest.load(rhs.data());
+        double[] x = dest.data();
+        for (int c = 0; c < x.length; c += this.n)
+            this.solveColumn(x, c);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Stores the inverse of A into {@code dest}, by solving for the columns of the identity.
+     * </p>
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If A is singular or if {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix inverse(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix is of wrong size");
+        if (this.singular)
+            throw new RuntimeException("Matrix is singular");
+        return this.solve(dest.identity(), dest);
+    }
+
+    /**
+     * <p>
+     *     Estimates the reciprocal condition number 1 / (||A||_1 * ||A^-1||_1) of A in O(N^2).
+     * </p>
+     * <p>
+     *     ||A^-1||_1 is estimated from a few solves with A and A^T by Hager's method, as refined by Higham
+     *     (LAPACK's {@code dlacon}). The estimate is a lower bound of ||A^-1||_1 that is rarely off by more than
+     *     a factor of 3, so the result is an upper bound of the true reciprocal condition number. Values near
+     *     the machine epsilon (about 1e-16) mean that solutions have no correct digits.
+     * </p>
+     * @return The estimate, 0 if A is singular
+     */
+    public double rcond() {
+        if (this.singular)
+            return 0d;
+        if (this.n == 0)
+            return 1d;
+        int n = this.n, j, last = -1;
+        double[] x = new double[n];
+        double est = 0d, prev, max;
+        Arrays.fill(x, 1d / n);
+        for (int iter = 0; iter < 5; ++iter) {
+            this.solveColumn(x, 0);
+            prev = est;
+            est = 0d;
+            for (int i = 0; i < n; ++i)
+                est += Math.abs(x[i]);
+            if (iter > 0 && est <= prev) //No progress
+                break;
+            for (int i = 0; i < n; ++i)
+                x[i] = x[i] >= 0d ? 1d : -1d;
+            this.solveTransposedColumn(x);
+            j = 0;
+            max = Math.abs(x[0]);
+            for (int i = 1; i < n; ++i)
+                if (Math.abs(x[i]) > max) {
+                    max = Math.abs(x[i]);
+                    j = i;
+                }
+            if (j == last) //Same unit vector as before
+                break;
+            last = j;
+            Arrays.fill(x, 0d);
+            x[j] = 1d;
+        }
+        for (int i = 0; i < n; ++i) //Alternating vector catches cancellation in the sign vectors
+            x[i] = (i % 2 == 0 ? 1d : -1d) * (1d + (n > 1 ? (double) i / (n - 1) : 0d));
+        this.solveColumn(x, 0);
+        double alt = 0d;
+        for (int i = 0; i < n; ++i)
+            alt += Math.abs(x[i]);
+        est = Math.max(est, 2d * alt / (3d * n));
+        return 1d / (this.norm * est);
+    }
+
+    /**
+     * Solves A * x = b in place for the column of {@code x} starting at {@code c}.
+     */
+    private void solveColumn(double[] x, int c) {
+        int n = this.n, j, jJ;
+        double acc;
+        for (j = 0; j < n; ++j) { //Apply P
+            if (this.piv[j] != j) {
+                acc = x[c + j];
+                x[c + j] = x[c + this.piv[j]];
+                x[c + this.piv[j]] = acc;
+            }
+        }
+        for (j = 0, jJ = 0; j < n; ++j, jJ += n) { //Solve L * z = P * b
+            acc = x[c + j];
+            if (acc != 0d) //Leading zeros, e.g. of the identity, stay zero
+                KERNELS.axpy(-acc, this.lu, jJ + j + 1, x, c + j + 1, n - j - 1);
+        }
+        for (j = n - 1, jJ = j * n; j >= 0; --j, jJ -= n) { //Solve U * x = z
+            acc = x[c + j] / this.lu[jJ + j];
+            x[c + j] = acc;
+            if (acc != 0d)
+                KERNELS.axpy(-acc, this.lu, jJ, x, c, j);
+        }
+    }
+
+    /**
+     * Solves A^T * x = b in place for the vector {@code x}.
+     */
+    private void solveTransposedColumn(double[] x) {
+        int n = this.n, j, jJ;
+        double acc;
+        for (j = 0, jJ = 0; j < n; ++j, jJ += n) //Solve U^T * z = b
+            x[j] = (x[j] - KERNELS.dot(this.lu, jJ, x, 0, j)) / this.lu[jJ + j];
+        for (j = n - 1, jJ = j * n; j >= 0; --j, jJ -= n) //Solve L^T * w = z
+            x[j] -= KERNELS.dot(this.lu, jJ + j + 1, x, j + 1, n - j - 1);
+        for (j = n - 1; j >= 0; --j) { //Apply P^T
+            if (this.piv[j] != j) {
+                acc = x[j];
+                x[j] = x[this.piv[j]];
+                x[this.piv[j]] = acc;
+            }
+        }
+    }
+}
@@ -1,10 +1,20 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * An M x N matrix with entries of type {@code double}.
  */
 public class Matrix {
-    private static final Map<Integer, Deque<double[]>> bufs = new HashMap<>();
+    private static final int L1_DOUBLES = 4 * 1024; //32 KiB
+    private static final int L2_DOUBLES = 32 * 1024; //256 KiB
+    private static final int COLUMN_TILE = 4;
+    private static final int ROW_TILE = 256;
+    private static final int TRANSPOSE_TILE = 32; //Tiles of both sides fit into the L1 cache
+    private static final int PARALLEL_GRAIN = 1 << 20; //Multiply-adds per parallel task
+    private static final Kernels KERNELS = Kernels.get();
+    private static final BufferPool<double[]> bufs = new BufferPool<>(double[]::new, b -> b.length, Double.BYTES, 64L << 20);
     private final int m;
     private final int n;
     private final int mn;
@@ -46,31 +56,41 @@ public class Matrix {
         this(m, n, new double[m * n]);
     }
 
+    /**
+     * <p>
+     *     Returns the pool of temporary buffers shared by all matrices of this type.
+     * </p>
+     * <p>
+     *     The pool is thread-safe. Its capacity may be configured and its counters inspected.
+     * </p>
+     * @return The buffer pool
+     */
+    public static BufferPool<double[]> getBufferPool() {
+        return bufs;
+    }
+
     /**
      * <p>
      *     Prints information about the usage of buffers to {@code System.out}.
      * </p>
      */
     public static void printSystemInfo() {
-        for (Map.Entry<Integer, Deque<double[]>> e : bufs.entrySet())
-            System.out.println("Size " + e.getKey() + " matrices: " + e.getValue().size() + " buffer(s)");
+        System.out.println(KERNELS);
+        System.out.println(bufs);
     }
 
     private static double[] popBuf(int mn) {
-        Deque<double[]> stack = bufs.computeIfAbsent(mn, ArrayDeque::new);
-        if (stack.isEmpty())
-            return new double[mn];
-        return stack.pop();
+        return bufs.pop(mn);
     }
 
-    private static double[] popBuf(Matrix mat) {
-        double[] buf = popBuf(mat.mn);
-        System.arraycopy(mat.data, 0, buf, 0, mat.mn);
+    private static double[] zeroBuf(int mn) {
+        double[] buf = popBuf(mn);
+        Arrays.fill(buf, 0d);
         return buf;
     }
 
     private static void pushBuf(double[] buf) {
-        bufs.get(buf.length).push(buf);
+        bufs.push(buf);
     }
 
     private static void pushBuf(double[] buf, Matrix mat) {
@@ -103,6 +123,16 @@ public class Matrix {
             throw new RuntimeException("Matrix cannot store result of multiplication");
     }
 
+    private static void assertTransposeMultipliable(Matrix a, Matrix b) {
+        if (a.m != b.m)
+            throw new RuntimeException("Matrices do not agree in height");
+    }
+
+    private static void assertTransposeProductOf(Matrix a, Matrix b, Matrix c) {
+        if (c.m != a.n || c.n != b.n)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+    }
+
     /**
      * <p>
      *     Creates a textual representation of {@code this}.
@@ -124,6 +154,27 @@ public class Matrix {
         return str.toString();
     }
 
+    /**
+     * @return The row count of {@code this}
+     */
+    public int rows() {
+        return this.m;
+    }
+
+    /**
+     * @return The column count of {@code this}
+     */
+    public int columns() {
+        return this.n;
+    }
+
+    /**
+     * @return The backing data array in column-major order (not copied)
+     */
+    double[] data() {
+        return this.data;
+    }
+
     /**
      * Loads data into {@code this}.
      * @param data The data (copied)
@@ -141,10 +192,7 @@ public class Matrix {
      */
     public double dot(Matrix other) {
         assertSameSize(this, other);
-        double value = 0;
-        for (int i = 0; i < this.mn; ++i)
-            value += this.data[i] * other.data[i];
-        return value;
+        return KERNELS.dot(this.data, 0, other.data, 0, this.mn);
     }
 
     /**
@@ -164,7 +212,14 @@ public class Matrix {
         return this;
     }
 
-    /*public Matrix add(Matrix other, Matrix dest) {
+    /**
+     * Adds {@code other} to {@code this} and stores the result in {@code dest}.
+     * @param other The right operand of the addition
+     * @param dest The destination matrix, which may be the same matrix as {@code this} or {@code other}
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix add(Matrix other, Matrix dest) {
         assertSameSize(this, other);
         assertSameSize(other, dest);
         for (int i = 0; i < this.mn; ++i)
@@ -172,33 +227,174 @@ public class Matrix {
         return dest;
     }
 
+    /**
+     * Adds {@code other} to {@code this} and stores the result in {@code this}.
+     * @param other The right operand of the addition
+     * @return {@code this}
+     * @throws RuntimeException If {@code other} does not have the proper dimensions
+     */
     public Matrix add(Matrix other) {
         return this.add(other, this);
-    }*/
+    }
 
     /**
-     * Stores the transposed version of {@code this} into {@code dest}.
+     * Subtracts {@code other} from {@code this} and stores the result in {@code dest}.
+     * @param other The right operand of the subtraction
+     * @param dest The destination matrix, which may be the same matrix as {@code this} or {@code other}
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix sub(Matrix other, Matrix dest) {
+        assertSameSize(this, other);
+        assertSameSize(other, dest);
+        for (int i = 0; i < this.mn; ++i)
+            dest.data[i] = this.data[i] - other.data[i];
+        return dest;
+    }
+
+    /**
+     * Subtracts {@code other} from {@code this} and stores the result in {@code this}.
+     * @param other The right operand of the subtraction
+     * @return {@code this}
+     * @throws RuntimeException If {@code other} does not have the proper dimensions
+     */
+    public Matrix sub(Matrix other) {
+        return this.sub(other, this);
+    }
+
+    /**
+     * <p>
+     *     Stores the transposed version of {@code this} into {@code dest}.
+     * </p>
+     * <p>
+     *     The matrix is copied in tiles whose source and destination fit into the L1 cache, directly into
+     *     {@code dest}. If {@code dest} shares the data of {@code this}, the matrix is transposed in place without
+     *     a second buffer: square matrices by swapping tiles across the diagonal, other ones by following the
+     *     cycles of the permutation.
+     * </p>
      * @param dest The destination matrix, which may be the same matrix as {@code this}
      * @return {@code dest}
      * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
      */
     public Matrix transpose(Matrix dest) {
         assertTransposedSize(this, dest);
-        double[] buf = popBuf(dest.mn);
-        int thisIndex = 0;
-        int destIndex = 0;
-        for (int i = 0; i < this.m; ++i) {
-            for (int j = 0; j < this.n; ++j) {
-                buf[destIndex] = this.data[thisIndex];
-                thisIndex += this.m;
-                ++destIndex;
-            }
-            thisIndex += 1 - this.mn;
+        if (dest.data != this.data)
+            transposeTiles(this.data, this.m, this.n, dest.data, 0, this.n);
+        else if (this.m == this.n)
+            transposeSquareInPlace(this.data, this.n, 0, this.n);
+        else
+            transposeCycles(this.data, this.m, this.n);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Stores the transposed version of {@code this} into {@code dest}, splitting the work over tiles of
+     *     columns of {@code this} in {@code pool}.
+     * </p>
+     * <p>
+     *     A square matrix is transposed in place in parallel, too. The in-place transposition of other shapes
+     *     follows the cycles of the permutation, which is sequential.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix transpose(Matrix dest, ForkJoinPool pool) {
+        assertTransposedSize(this, dest);
+        if (dest.data == this.data && this.m != this.n) {
+            transposeCycles(this.data, this.m, this.n);
+            return dest;
         }
-        pushBuf(buf, dest);
+        boolean inPlace = dest.data == this.data;
+        int tiles = (this.n + TRANSPOSE_TILE - 1) / TRANSPOSE_TILE;
+        int grain = (int) Math.max(1, PARALLEL_GRAIN / Math.max(1L, (long) this.m * TRANSPOSE_TILE));
+        pool.invoke(new RangeTask(0, tiles, grain, (lo, hi) -> {
+            int j0 = lo * TRANSPOSE_TILE, j1 = Math.min(hi * TRANSPOSE_TILE, this.n);
+            if (inPlace)
+                transposeSquareInPlace(this.data, this.n, j0, j1); //Tile rows touch disjoint pairs of tiles
+            else
+                transposeTiles(this.data, this.m, this.n, dest.data, j0, j1);
+        }));
         return dest;
     }
 
+    /**
+     * Copies the columns {@code j0} to {@code j1} of the M x N matrix {@code a} into the rows of its transpose
+     * {@code t}, tile by tile.
+     */
+    private static void transposeTiles(double[] a, int m, int n, double[] t, int j0, int j1) {
+        int iEnd, jEnd, aJ, tI;
+        for (int jj = j0; jj < j1; jj += TRANSPOSE_TILE) {
+            jEnd = Math.min(jj + TRANSPOSE_TILE, j1);
+            for (int ii = 0; ii < m; ii += TRANSPOSE_TILE) {
+                iEnd = Math.min(ii + TRANSPOSE_TILE, m);
+                for (int i = ii; i < iEnd; ++i) { //Write contiguous rows of the transpose
+                    tI = i * n;
+                    aJ = i + jj * m;
+                    for (int j = jj; j < jEnd; ++j, aJ += m)
+                        t[tI + j] = a[aJ];
+                }
+            }
+        }
+    }
+
+    /**
+     * Transposes the N x N matrix {@code a} in place, swapping the tiles in the tile rows starting in {@code i0}
+     * to {@code i1} with their mirror images.
+     */
+    private static void transposeSquareInPlace(double[] a, int n, int i0, int i1) {
+        int iEnd, jEnd, jStart;
+        double v;
+        for (int ii = i0; ii < i1; ii += TRANSPOSE_TILE) {
+            iEnd = Math.min(ii + TRANSPOSE_TILE, n);
+            for (int jj = ii; jj < n; jj += TRANSPOSE_TILE) { //Tiles on and above the diagonal
+                jEnd = Math.min(jj + TRANSPOSE_TILE, n);
+                for (int i = ii; i < iEnd; ++i) {
+                    jStart = jj == ii ? i + 1 : jj; //Only the upper half of a diagonal tile
+                    for (int j = jStart; j < jEnd; ++j) {
+                        v = a[i + j * n];
+                        a[i + j * n] = a[j + i * n];
+                        a[j + i * n] = v;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     *     Transposes the M x N matrix {@code a} in place.
+     * </p>
+     * <p>
+     *     The entry at index k moves to index k * N mod (M * N - 1), so the entries are rotated along the cycles
+     *     of this permutation. A bit set of the visited indices, 1/64 of the size of the matrix, marks the
+     *     cycles already rotated.
+     * </p>
+     */
+    private static void transposeCycles(double[] a, int m, int n) {
+        if (m <= 1 || n <= 1) //A vector has the same layout as its transpose
+            return;
+        int last = m * n - 1, k, next;
+        long[] visited = new long[(last >>> 6) + 1];
+        double carry, v;
+        for (int start = 1; start < last; ++start) {
+            if ((visited[start >>> 6] & 1L << start) != 0)
+                continue;
+            carry = a[start];
+            k = start;
+            do {
+                next = (int) ((long) k * n % last);
+                v = a[next];
+                a[next] = carry;
+                carry = v;
+                visited[next >>> 6] |= 1L << next;
+                k = next;
+            } while (k != start);
+        }
+    }
+
     /**
      * <p>
      *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}.
@@ -214,32 +410,293 @@ public class Matrix {
     public Matrix mul(Matrix other, Matrix dest) {
         assertMultipliable(this, other);
         assertProductOf(this, other, dest);
-        double[] destBuf = popBuf(dest.mn);
-        int thisIndex = 0, otherIndex = 0, destIndex = 0;
-        double acc;
-        for (int j = 0; j < dest.n; ++j) {
-            for (int i = 0; i < dest.m; ++i) {
-                acc = 0;
-                for (int k = 0; k < this.n; ++k) {
-                    acc += this.data[thisIndex] * other.data[otherIndex];
-                    thisIndex += this.m; //Advance left matrix to the right
-                    ++otherIndex; //Advance right matrix to the bottom
-                }
-                thisIndex += 1 - this.mn; //Reset left matrix to the left and move one down
-                otherIndex -= other.m; //Reset right matrix to the top
-                destBuf[destIndex++] = acc;
+        double[] destBuf = zeroBuf(dest.mn);
+        mulKernel(this.data, this.m, this.n, other.data, destBuf, 0, dest.m, 0, dest.n);
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}, splitting the
+     *     destination into tiles that are computed in {@code pool}.
+     * </p>
+     * <p>
+     *     Every tile is computed by the same kernel as in {@link #mul(Matrix, Matrix)}, so the result is
+     *     bit-identical to the sequential one. All operands may be the same object.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix mul(Matrix other, Matrix dest, ForkJoinPool pool) {
+        assertMultipliable(this, other);
+        assertProductOf(this, other, dest);
+        double[] destBuf = zeroBuf(dest.mn);
+        int rowTiles = (dest.m + ROW_TILE - 1) / ROW_TILE;
+        int columnTiles = (dest.n + COLUMN_TILE - 1) / COLUMN_TILE;
+        int grain = (int) Math.max(1, PARALLEL_GRAIN / Math.max(1L, (long) ROW_TILE * COLUMN_TILE * this.n));
+        pool.invoke(new RangeTask(0, rowTiles * columnTiles, grain, (lo, hi) -> {
+            int i0, j0;
+            for (int t = lo; t < hi; ++t) {
+                i0 = (t % rowTiles) * ROW_TILE;
+                j0 = (t / rowTiles) * COLUMN_TILE;
+                mulKernel(this.data, this.m, this.n, other.data, destBuf,
+                        i0, Math.min(i0 + ROW_TILE, dest.m), j0, Math.min(j0 + COLUMN_TILE, dest.n));
+            }
+        }));
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Accumulates the product of rows {@code i0} to {@code i1} of the M x L matrix {@code a} and
+     *     columns {@code j0} to {@code j1} of the L x N matrix {@code b} into the M x N matrix {@code c}.
+     * </p>
+     * <p>
+     *     The rows are split into blocks whose columns fit into the L1 cache next to a tile of
+     *     {@code COLUMN_TILE} destination columns, and the depth is split such that a block of {@code a}
+     *     fits into the L2 cache. Every element of {@code c} still sums its products in ascending order of
+     *     {@code k}, so the result is identical to the one of the naive triple loop.
+     * </p>
+     */
+    private static void mulKernel(double[] a, int m, int l, double[] b, double[] c, int i0, int i1, int j0, int j1) {
+        int rowBlock = Math.max(1, Math.min(i1 - i0, L1_DOUBLES / (COLUMN_TILE + 1)));
+        int depthBlock = Math.max(1, Math.min(l, L2_DOUBLES / rowBlock));
+        int iEnd, kEnd, j;
+        for (int ii = i0; ii < i1; ii += rowBlock) {
+            iEnd = Math.min(ii + rowBlock, i1);
+            for (int kk = 0; kk < l; kk += depthBlock) {
+                kEnd = Math.min(kk + depthBlock, l);
+                for (j = j0; j + COLUMN_TILE <= j1; j += COLUMN_TILE)
+                    mulTile4(a, m, l, b, c, ii, iEnd, kk, kEnd, j);
+                for (; j < j1; ++j)
+                    mulTile1(a, m, l, b, c, ii, iEnd, kk, kEnd, j);
             }
-            thisIndex = 0;
-            otherIndex += other.m;
         }
+    }
+
+    private static void mulTile4(double[] a, int m, int l, double[] b, double[] c,
+                                 int i0, int i1, int k0, int k1, int j) {
+        int c0 = j * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m; //Start of the destination columns
+        int b0 = j * l, b1 = b0 + l, b2 = b1 + l, b3 = b2 + l; //Start of the right columns
+        int aK = k0 * m; //Start of the left column
+        for (int k = k0; k < k1; ++k, aK += m) //Walk down column k of the left matrix with the four factors of row k
+            KERNELS.axpy4(a, aK + i0, b[b0 + k], b[b1 + k], b[b2 + k], b[b3 + k],
+                    c, c0 + i0, c1 + i0, c2 + i0, c3 + i0, i1 - i0);
+    }
+
+    private static void mulTile1(double[] a, int m, int l, double[] b, double[] c,
+                                 int i0, int i1, int k0, int k1, int j) {
+        int c0 = j * m, b0 = j * l, aK = k0 * m;
+        for (int k = k0; k < k1; ++k, aK += m)
+            KERNELS.axpy(b[b0 + k], a, aK + i0, c, c0 + i0, i1 - i0);
+    }
+
+    /**
+     * <p>
+     *     Multiplies the transpose of {@code this} with {@code other} and stores the result in {@code dest}.
+     * </p>
+     * <p>
+     *     The transpose is never materialized: every element of the result is the dot product of two columns,
+     *     which are contiguous in column-major order. All operands may be the same object.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix transposeMul(Matrix other, Matrix dest) {
+        assertTransposeMultipliable(this, other);
+        assertTransposeProductOf(this, other, dest);
+        double[] destBuf = zeroBuf(dest.mn);
+        transposeMulKernel(this.data, this.m, this.n, other.data, other.n, destBuf, 0, this.m);
         pushBuf(destBuf, dest);
         return dest;
     }
 
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this}, i.e. the transpose of {@code this} multiplied with
+     *     {@code this}, and stores it in {@code dest}.
+     * </p>
+     * <p>
+     *     Only the upper triangle is computed, the lower triangle is mirrored.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix gram(Matrix dest) {
+        assertTransposeProductOf(this, this, dest);
+        double[] destBuf = zeroBuf(dest.mn);
+        gramKernel(this.data, this.m, this.n, null, 0, destBuf, null, 0, this.m);
+        mirrorUpper(destBuf, this.n);
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this} and the transpose of {@code this} multiplied with {@code y}
+     *     in a single pass over the rows of {@code this}.
+     * </p>
+     * <p>
+     *     For a design matrix X and a target vector y this yields both sides of the normal equations.
+     *     All operands may be the same object.
+     * </p>
+     * @param dest The destination matrix of the Gram matrix
+     * @param y The right operand of the second multiplication
+     * @param yDest The destination matrix of the second multiplication
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix gram(Matrix dest, Matrix y, Matrix yDest) {
+        assertTransposeMultipliable(this, y);
+        assertTransposeProductOf(this, this, dest);
+        assertTransposeProductOf(this, y, yDest);
+        double[] destBuf = zeroBuf(dest.mn);
+        double[] yDestBuf = zeroBuf(yDest.mn);
+        gramKernel(this.data, this.m, this.n, y.data, y.n, destBuf, yDestBuf, 0, this.m);
+        mirrorUpper(destBuf, this.n);
+        pushBuf(yDestBuf, yDest);
+        pushBuf(destBuf, dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies the transpose of {@code this} with {@code other} and stores the result in {@code dest},
+     *     reducing partial products over row ranges of {@code this} in {@code pool}.
+     * </p>
+     * <p>
+     *     The row ranges and the order in which their partial products are summed only depend on the
+     *     dimensions, so repeated runs give bit-identical results regardless of the parallelism of {@code pool}.
+     *     All operands may be the same object.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix transposeMul(Matrix other, Matrix dest, ForkJoinPool pool) {
+        assertTransposeMultipliable(this, other);
+        assertTransposeProductOf(this, other, dest);
+        double[][] partial = pool.invoke(new GramTask(this.data, this.m, this.n, other.data, other.n, false,
+                0, this.m));
+        pushBuf(partial[1], dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this} and stores it in {@code dest}, reducing partial Gram
+     *     matrices over row ranges of {@code this} in {@code pool}.
+     * </p>
+     * <p>
+     *     The result is deterministic as described in {@link #transposeMul(Matrix, Matrix, ForkJoinPool)}.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix gram(Matrix dest, ForkJoinPool pool) {
+        assertTransposeProductOf(this, this, dest);
+        double[][] partial = pool.invoke(new GramTask(this.data, this.m, this.n, null, 0, true, 0, this.m));
+        mirrorUpper(partial[0], this.n);
+        pushBuf(partial[0], dest);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this} and the transpose of {@code this} multiplied with {@code y},
+     *     reducing partial products over row ranges of {@code this} in {@code pool}.
+     * </p>
+     * <p>
+     *     The result is deterministic as described in {@link #transposeMul(Matrix, Matrix, ForkJoinPool)}.
+     *     All operands may be the same object.
+     * </p>
+     * @param dest The destination matrix of the Gram matrix
+     * @param y The right operand of the second multiplication
+     * @param yDest The destination matrix of the second multiplication
+     * @param pool The pool executing the work
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix gram(Matrix dest, Matrix y, Matrix yDest, ForkJoinPool pool) {
+        assertTransposeMultipliable(this, y);
+        assertTransposeProductOf(this, this, dest);
+        assertTransposeProductOf(this, y, yDest);
+        double[][] partial = pool.invoke(new GramTask(this.data, this.m, this.n, y.data, y.n, true, 0, this.m));
+        mirrorUpper(partial[0], this.n);
+        pushBuf(partial[1], yDest);
+        pushBuf(partial[0], dest);
+        return dest;
+    }
+
+    private static int rowChunk(int n, int p) {
+        return Math.max(64, L2_DOUBLES / (n + p));
+    }
+
+    /**
+     * Accumulates rows {@code r0} to {@code r1} of the product of the transposed M x N matrix {@code a} and the
+     * M x P matrix {@code b} into the N x P matrix {@code c}.
+     */
+    private static void transposeMulKernel(double[] a, int m, int n, double[] b, int p, double[] c, int r0, int r1) {
+        int chunk = rowChunk(n, p);
+        for (int rr = r0; rr < r1; rr += chunk)
+            transposeMulBlock(a, m, n, b, p, c, rr, Math.min(rr + chunk, r1), false);
+    }
+
+    /**
+     * Accumulates rows {@code r0} to {@code r1} of the upper triangle of the Gram matrix of the M x N matrix
+     * {@code x} into {@code g} and, unless {@code y} is {@code null}, of the product of the transpose of
+     * {@code x} and the M x P matrix {@code y} into {@code gy}. The rows are streamed in chunks that stay in cache
+     * for both products.
+     */
+    private static void gramKernel(double[] x, int m, int n, double[] y, int p, double[] g, double[] gy,
+                                   int r0, int r1) {
+        int chunk = rowChunk(n, p), rEnd;
+        for (int rr = r0; rr < r1; rr += chunk) {
+            rEnd = Math.min(rr + chunk, r1);
+            transposeMulBlock(x, m, n, x, n, g, rr, rEnd, true);
+            if (y != null)
+                transposeMulBlock(x, m, n, y, p, gy, rr, rEnd, false);
+        }
+    }
+
+    private static void transposeMulBlock(double[] a, int m, int n, double[] b, int p, double[] c,
+                                          int r0, int r1, boolean upper) {
+        int aI, bJ = 0, cIndex, iEnd;
+        for (int j = 0; j < p; ++j, bJ += m) {
+            iEnd = upper ? j + 1 : n; //Only compute the upper triangle if the result is symmetric
+            cIndex = j * n;
+            aI = 0;
+            for (int i = 0; i < iEnd; ++i, aI += m) //Dot product of two contiguous column segments
+                c[cIndex++] += KERNELS.dot(a, aI + r0, b, bJ + r0, r1 - r0);
+        }
+    }
+
+    private static void mirrorUpper(double[] g, int n) {
+        for (int j = 1; j < n; ++j)
+            for (int i = 0; i < j; ++i)
+                g[j + i * n] = g[i + j * n];
+    }
+
     /**
      * <p>
      *     Inverts {@code this} and stores the result in {@code dest}.
      * </p>
+     * <p>
+     *     The inverse is computed from an {@link LU} decomposition with partial pivoting. To solve for right-hand
+     *     sides one at a time, or to check the condition of {@code this}, keep the decomposition instead.
+     * </p>
      * @param dest The destination matrix, which may be the same matrix as {@code this}
      * @return {@code dest}
      * @throws RuntimeException If {@code this} is not square or singular
@@ -248,96 +705,7 @@ public class Matrix {
     public Matrix invert(Matrix dest) {
         assertSquare(this);
         assertSameSize(this, dest);
-        double[] lhs = popBuf(this);
-        double[] rhs = popBuf(dest.identity());
-        int i, j, k, pI = 0, sI, pJ, sJ;
-        double temp, factor;
-        for (i = 0; i < this.m; ++i) {
-            sI = pI; //Set swap row to pivot row
-            while (Math.abs(lhs[sI]) < 0.000001) { //TODO rel. error
-                ++sI; //Try other rows while degenerate
-                if (i + sI - pI == this.m)
-                    throw new RuntimeException("Matrix is singular");
-            }
-            if (sI != pI) { //If was degenerate at least once, we need to swap
-                pJ = i; //Start a row-wise iteration at the pivot row
-                sJ = i + sI - pI; //Start a row-wise iteration at the swap row
-                for (j = 0; j < i; ++j) { //Go through the previous columns on the RHS
-                    temp = rhs[pJ];
-                    rhs[pJ] = rhs[sJ];
-                    rhs[sJ] = temp;
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-                for (; j < this.n; ++j) { //Go through all remaining columns and swap
-                    temp = lhs[pJ];
-                    lhs[pJ] = lhs[sJ];
-                    lhs[sJ] = temp;
-                    temp = rhs[pJ];
-                    rhs[pJ] = rhs[sJ];
-                    rhs[sJ] = temp;
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-            }
-            factor = 1/lhs[pI]; //Get the pivot factor
-            pJ = i;
-            for (j = 0; j < i; ++j) {
-                rhs[pJ] *= factor;
-                pJ += this.m;
-            }
-            lhs[pI] = 1d; //Set the pivot's new value to 1
-            rhs[pI] *= factor; //Multiply RHS
-            pJ += this.m; //Advance to the next column
-            for (j = i + 1; j < this.n; ++j) { //Multiply all remaining columns with the pivot factor
-                lhs[pJ] *= factor;
-                rhs[pJ] *= factor;
-                pJ += this.m;
-            }
-            sI = pI + 1; //First row after pivot
-            for (k = i + 1; k < this.m; ++k) { //Loop over all remaining rows
-                factor = lhs[sI]; //Get factor for row
-                pJ = i;
-                sJ = k;
-                for (j = 0; j < i; ++j) {
-                    rhs[sJ] -= factor * rhs[pJ];
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-                lhs[sI] = 0d; //Set new value of eliminated column to 0
-                rhs[sI] -= factor * rhs[pI];
-                pJ += this.m; //Jump to second column
-                sJ += this.m; //Jump to second column
-                for (j = i + 1; j < this.n; ++j) { //Loop over all remaining columns
-                    lhs[sJ] -= factor * lhs[pJ];
-                    rhs[sJ] -= factor * rhs[pJ];
-                    pJ += this.m;
-                    sJ += this.m;
-                }
-                ++sI;
-            }
-            pI = sI + i + 1;
-        }
-        pI = this.mn - 1; //Set last element as pivot
-        for (i = this.m - 1; i >= 0; --i) { //Loop over all rows backwards
-            sI = pI - 1;
-            for (k = i - 1; k >= 0; --k) { //Loop over the remaining rows backwards
-                factor = lhs[sI];
-                lhs[sI] = 0;
-                pJ = i;
-                sJ = k;
-                for (j = 0; j < this.n; ++j) {
-                    rhs[sJ] -= factor * rhs[pJ];
-                    sJ += this.m;
-                    pJ += this.m;
-                }
-                --sI;
-            }
-            pI -= this.m + 1;
-        }
-        pushBuf(rhs, dest);
-        pushBuf(lhs);
-        return dest;
+        return new LU(this).inverse(dest);
     }
 
     /**
@@ -348,4 +716,136 @@ public class Matrix {
     public Matrix invert() {
         return this.invert(this);
     }
+
+    /**
+     * <p>
+     *     Solves {@code this} * X = {@code rhs} for X and stores X in {@code dest}, where {@code this} is symmetric
+     *     positive-definite.
+     * </p>
+     * <p>
+     *     Only the lower triangle of {@code this} is read. To solve for right-hand sides one at a time, keep the
+     *     {@link Cholesky} decomposition instead.
+     * </p>
+     * @param rhs The right-hand side(s)
+     * @param dest The destination matrix, which may be the same matrix as {@code rhs}
+     * @return {@code dest}
+     * @throws RuntimeException If {@code this} is not square or positive-definite
+     * or if any matrix does not have the proper dimensions
+     */
+    public Matrix solveSPD(Matrix rhs, Matrix dest) {
+        return new Cholesky(this).solve(rhs, dest);
+    }
+
+    /**
+     * <p>
+     *     Computes the vector (or matrix) X minimizing the 2-norm of {@code this} * X - {@code y} by means of a
+     *     {@link QR} decomposition of {@code this}.
+     * </p>
+     * <p>
+     *     Unlike solving the normal equations, this does not square the condition number of {@code this}.
+     *     {@code this} is not modified, see {@link QR#QR(Matrix, boolean)} for an in-place decomposition.
+     * </p>
+     * @param y The right-hand side(s)
+     * @return A new matrix holding X
+     * @throws RuntimeException If {@code this} has more columns than rows or is rank deficient
+     * or if {@code y} does not have the proper dimensions
+     */
+    public Matrix leastSquares(Matrix y) {
+        return new QR(this).solve(y, new Matrix(this.n, y.n));
+    }
+
+    private interface RangeAction {
+        void run(int lo, int hi);
+    }
+
+    /**
+     * Splits the index range {@code lo} to {@code hi} in halves until it is at most {@code grain} long.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+        private final RangeAction action;
+
+        private RangeTask(int lo, int hi, int grain, RangeAction action) {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.hi - this.lo <= this.grain) {
+                this.action.run(this.lo, this.hi);
+                return;
+            }
+            int mid = (this.lo + this.hi) >>> 1;
+            invokeAll(new RangeTask(this.lo, mid, this.grain, this.action),
+                    new RangeTask(mid, this.hi, this.grain, this.action));
+        }
+    }
+
+    /**
+     * <p>
+     *     Reduces the (upper) Gram matrix of {@code x} and / or the product of the transpose of {@code x} and
+     *     {@code y} over the rows {@code r0} to {@code r1}.
+     * </p>
+     * <p>
+     *     The range is halved until it is at most one leaf long, which only depends on the dimensions, and the
+     *     right partial is always added to the left one. The result is an array holding the Gram matrix (or
+     *     {@code null}) and the product (or {@code null}).
+     * </p>
+     */
+    private static final class GramTask extends RecursiveTask<double[][]> {
+        private static final long serialVersionUID = 1L;
+        private final double[] x;
+        private final int m;
+        private final int n;
+        private final double[] y;
+        private final int p;
+        private final boolean gram;
+        private final int r0;
+        private final int r1;
+
+        private GramTask(double[] x, int m, int n, double[] y, int p, boolean gram, int r0, int r1) {
+            this.x = x;
+            this.m = m;
+            this.n = n;
+            this.y = y;
+            this.p = p;
+            this.gram = gram;
+            this.r0 = r0;
+            this.r1 = r1;
+        }
+
+        @Override
+        protected double[][] compute() {
+            int work = Math.max(1, this.n * ((this.gram ? this.n : 0) + this.p));
+            int leaf = Math.max(rowChunk(this.n, this.p), PARALLEL_GRAIN / work);
+            if (this.r1 - this.r0 <= leaf) {
+                double[] g = this.gram ? zeroBuf(this.n * this.n) : null;
+                double[] gy = this.y != null ? zeroBuf(this.n * this.p) : null;
+                if (this.gram)
+                    gramKernel(this.x, this.m, this.n, this.y, this.p, g, gy, this.r0, this.r1);
+                else
+                    transposeMulKernel(this.x, this.m, this.n, this.y, this.p, gy, this.r0, this.r1);
+                return new double[][] {g, gy};
+            }
+            int mid = (this.r0 + this.r1) >>> 1;
+            GramTask right = new GramTask(this.x, this.m, this.n, this.y, this.p, this.gram, mid, this.r1);
+            right.fork();
+            double[][] l = new GramTask(this.x, this.m, this.n, this.y, this.p, this.gram, this.r0, mid).compute();
+            double[][] r = right.join();
+            for (int k = 0; k < l.length; ++k) {
+                if (l[k] != null) {
+                    for (int i = 0; i < l[k].length; ++i)
+                        l[k][i] += r[k][i];
+                    pushBuf(r[k]);
+                }
+            }
+            return l;
+        }
+    }
 }
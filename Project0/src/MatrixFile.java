@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>
+ *     A binary file format for matrices, which is loaded without parsing.
+ * </p>
+ * <p>
+ *     A file starts with a header of {@code HEADER} bytes: the magic {@code IMLM}, the version, the data type
+ *     (1 for {@code double}) and the layout (0 for column-major) as {@code int}s, followed by the row count M and
+ *     the column count N as {@code long}s and zero padding. The M * N entries follow in column-major order. All
+ *     values are little-endian, and the entries are aligned to 64 bytes.
+ * </p>
+ * <p>
+ *     Since the columns are contiguous, any range of columns can be mapped on its own, e.g. only the features of
+ *     a data set converted from train.csv.
+ * </p>
+ */
+public class MatrixFile {
+    private static final int HEADER = 64;
+    private static final int MAGIC = 'I' | 'M' << 8 | 'L' << 16 | 'M' << 24; //"IMLM" in little-endian order
+    private static final int VERSION = 1;
+    private static final int FLOAT64 = 1;
+    private static final int COLUMN_MAJOR = 0;
+    private static final int BLOCK = 1 << 20; //1 MiB
+
+    private MatrixFile() {
+    }
+
+    /**
+     * Writes {@code mat} to the file {@code path}.
+     * @param path The file name
+     * @param mat The matrix
+     * @throws RuntimeException If the file cannot be written
+     */
+    public static void write(String path, Matrix mat) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buf, mat.rows(), mat.columns());
+            double[] data = mat.data();
+            int length;
+            for (int done = 0; done < data.length; done += length) {
+                length = Math.min(data.length - done, buf.remaining() / Double.BYTES);
+                buf.asDoubleBuffer().put(data, done, length);
+                buf.position(buf.position() + length * Double.BYTES);
+                buf.flip();
+                while (buf.hasRemaining())
+                    channel.write(buf);
+                buf.clear();
+            }
+            if (data.length == 0) { //Only the header
+                buf.flip();
+                while (buf.hasRemaining())
+                    channel.write(buf);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Puts the header of an M x N matrix file into {@code buf}, which is positioned after it.
+     */
+    private static void putHeader(ByteBuffer buf, long m, long n) {
+        buf.putInt(MAGIC).putInt(VERSION).putInt(FLOAT64).putInt(COLUMN_MAJOR).putLong(m).putLong(n);
+        while (buf.position() < HEADER)
+            buf.put((byte) 0);
+    }
+
+    /**
+     * <p>
+     *     Creates the matrix file {@code path} for an M x N matrix of zeros and maps it writable.
+     * </p>
+     * <p>
+     *     The entries are not written, the file is only extended to its full size, so it takes no time and,
+     *     on most file systems, no disk space until the entries are set.
+     * </p>
+     * @param path The file name
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @return The matrix
+     * @throws RuntimeException If the file cannot be written
+     */
+    public static OffHeapMatrix create(String path, long m, long n) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buf, m, n);
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            if (m * n > 0) //Extend the file by writing its last byte
+                channel.write(ByteBuffer.allocate(1), HEADER + m * n * Double.BYTES - 1);
+            return OffHeapMatrix.map(channel, HEADER, m, n, FileChannel.MapMode.READ_WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>
+     *     Converts the .csv file {@code csvPath} to the matrix file {@code path}, with one column per field.
+     * </p>
+     * <p>
+     *     The number of fields is taken from the first record. The file is created with {@link #create} and
+     *     filled by {@link CSVReader}, which parses the .csv file in parallel chunks and copies every parsed block
+     *     of rows straight into the mapped columns. Neither file is ever held on the heap, so data sets beyond the
+     *     size of a {@link Matrix} can be converted.
+     * </p>
+     * <p>
+     *     Every record must have as many values as the first one, blank lines are not supported.
+     * </p>
+     * @param csvPath The name of the .csv file
+     * @param skipLines The number of lines to skip, e.g. 1 for the column headers
+     * @param pool The pool executing the parsing
+     * @param path The name of the matrix file
+     * @return The converted matrix, mapped writable on {@code path}
+     * @throws RuntimeException If a file cannot be read or written
+     */
+    public static OffHeapMatrix convert(String csvPath, int skipLines, ForkJoinPool pool, String path) {
+        CSVReader rdr = new CSVReader(csvPath);
+        for (int i = 0; i < skipLines; ++i)
+            rdr.nextLine();
+        String line = rdr.nextLine();
+        rdr.close();
+        if (line == null)
+            throw new RuntimeException("File has no records");
+        int columns = 1;
+        for (int i = 0; i < line.length(); ++i)
+            if (line.charAt(i) == ',')
+                ++columns;
+        int n = columns;
+        return CSVReader.readColumnMajor(csvPath, skipLines, pool, columns, m -> create(path, m, n));
+    }
+
+    /**
+     * Reads the row and column count from the header of the matrix file in {@code channel}.
+     */
+    private static long[] readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0)
+                throw new RuntimeException("Not a matrix file");
+        header.flip();
+        if (header.getInt() != MAGIC)
+            throw new RuntimeException("Not a matrix file");
+        if (header.getInt() != VERSION)
+            throw new RuntimeException("Unsupported matrix file version");
+        if (header.getInt() != FLOAT64 || header.getInt() != COLUMN_MAJOR)
+            throw new RuntimeException("Unsupported matrix file data type or layout");
+        long m = header.getLong(), n = header.getLong();
+        if (m < 0 || n < 0 || channel.size() < HEADER + m * n * Double.BYTES)
+            throw new RuntimeException("Matrix file is corrupt");
+        return new long[] {m, n};
+    }
+
+    /**
+     * Maps the matrix stored in the file {@code path}, without reading it.
+     * @param path The file name
+     * @param writable Whether changes of the matrix are written to the file
+     * @return The matrix
+     * @throws RuntimeException If the file cannot be opened or is not a valid matrix file
+     */
+    public static OffHeapMatrix map(String path, boolean writable) {
+        return map(path, 0, -1, writable);
+    }
+
+    /**
+     * Maps the columns {@code firstColumn} to {@code firstColumn + columns} of the matrix stored in the file
+     * {@code path}, without reading them.
+     * @param path The file name
+     * @param firstColumn The first column
+     * @param columns The number of columns, or -1 for all remaining ones
+     * @param writable Whether changes of the matrix are written to the file
+     * @return The M x {@code columns} matrix
+     * @throws RuntimeException If the file cannot be opened, is not a valid matrix file or has too few columns
+     */
+    public static OffHeapMatrix map(String path, long firstColumn, long columns, boolean writable) {
+        try (FileChannel channel = writable
+                ? FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long[] mn = readHeader(channel);
+            if (columns < 0)
+                columns = mn[1] - firstColumn;
+            if (firstColumn < 0 || firstColumn + columns > mn[1])
+                throw new RuntimeException("Matrix file has too few columns");
+            return OffHeapMatrix.map(channel, HEADER + firstColumn * mn[0] * Double.BYTES, mn[0], columns,
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the matrix stored in the file {@code path} into the heap.
+     * @param path The file name
+     * @return The matrix
+     * @throws RuntimeException If the file cannot be read, is not a valid matrix file or too large for a {@link Matrix}
+     */
+    public static Matrix read(String path) {
+        return read(path, 0, -1);
+    }
+
+    /**
+     * Reads the columns {@code firstColumn} to {@code firstColumn + columns} of the matrix stored in the file
+     * {@code path} into the heap, with a single bulk copy.
+     * @param path The file name
+     * @param firstColumn The first column
+     * @param columns The number of columns, or -1 for all remaining ones
+     * @return The M x {@code columns} matrix
+     * @throws RuntimeException If the file cannot be read, is not a valid matrix file, has too few columns or
+     * if the columns are too large for a {@link Matrix}
+     */
+    public static Matrix read(String path, long firstColumn, long columns) {
+        OffHeapMatrix mapped = map(path, firstColumn, columns, false);
+        if (mapped.rows() * mapped.columns() > Integer.MAX_VALUE)
+            throw new RuntimeException("Matrix is too large");
+        return mapped.toMatrix(new Matrix((int) mapped.rows(), (int) mapped.columns()));
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     An incremental accumulator of the normal equations X^T * X * w = X^T * y of a linear regression with N
+ *     features.
+ * </p>
+ * <p>
+ *     Rows are collected into a batch of fixed size, and every full batch is folded into X^T * X and X^T * y with
+ *     {@link Matrix#gram(Matrix, Matrix, Matrix)}. The memory used is O(N^2 + batch size * N) regardless of the
+ *     number of rows, and the weights may be computed at any point. Accumulators of different shards of the
+ *     data can be merged.
+ * </p>
+ */
+public class NormalEquations {
+    private final int n;
+    private final int batchSize;
+    private final Matrix xtx;
+    private final Matrix xty;
+    private final Matrix batchX;
+    private final Matrix batchY;
+    private final Matrix batchXtx;
+    private final Matrix batchXty;
+    private final double[] xData;
+    private final double[] yData;
+    private int batchRows = 0;
+    private double yty = 0d;
+    private long count = 0;
+
+    /**
+     * Creates a new empty accumulator.
+     * @param n The number of features
+     * @param batchSize The number of rows per batch
+     */
+    public NormalEquations(int n, int batchSize) {
+        this.n = n;
+        this.batchSize = batchSize;
+        this.xtx = new Matrix(n, n);
+        this.xty = new Matrix(n, 1);
+        this.batchX = new Matrix(batchSize, n);
+        this.batchY = new Matrix(batchSize, 1);
+        this.batchXtx = new Matrix(n, n);
+        this.batchXty = new Matrix(n, 1);
+        this.xData = this.batchX.data();
+        this.yData = this.batchY.data();
+    }
+
+    private static void assertResult(Matrix dest, int m, int n) {
+        if (dest.rows() != m || dest.columns() != n)
+            throw new RuntimeException("Matrix cannot store result");
+    }
+
+    /**
+     * @return The number of features
+     */
+    public int features() {
+        return this.n;
+    }
+
+    /**
+     * @return The number of rows added so far
+     */
+    public long getCount() {
+        return this.count + this.batchRows;
+    }
+
+    /**
+     * Adds a row to the regression.
+     * @param x The N feature values of the row
+     * @param y The target value of the row
+     */
+    public void add(double[] x, double y) {
+        for (int j = 0, index = this.batchRows; j < this.n; ++j, index += this.batchSize)
+            this.xData[index] = x[j];
+        this.yData[this.batchRows] = y;
+        if (++this.batchRows == this.batchSize)
+            this.flush();
+    }
+
+    /**
+     * <p>
+     *     Adds all remaining records of {@code rdr} to the regression.
+     * </p>
+     * <p>
+     *     Each record consists of an id, the target value and the N feature values, as in train.csv.
+     * </p>
+     * @param rdr The reader
+     * @return The number of records read
+     */
+    public long read(CSVReader rdr) {
+        long records = 0;
+        while (rdr.hasNext()) {
+            rdr.nextInt(); //Skip the id
+            this.yData[this.batchRows] = rdr.nextDouble();
+            for (int j = 0, index = this.batchRows; j < this.n; ++j, index += this.batchSize)
+                this.xData[index] = rdr.nextDouble();
+            if (++this.batchRows == this.batchSize)
+                this.flush();
+            ++records;
+        }
+        return records;
+    }
+
+    /**
+     * Folds the rows of the current batch into the normal equations.
+     */
+    public void flush() {
+        if (this.batchRows == 0)
+            return;
+        for (int j = 0; j < this.n; ++j) //Zero rows do not contribute to the sums
+            Arrays.fill(this.xData, j * this.batchSize + this.batchRows, (j + 1) * this.batchSize, 0d);
+        Arrays.fill(this.yData, this.batchRows, this.batchSize, 0d);
+        this.batchX.gram(this.batchXtx, this.batchY, this.batchXty);
+        this.xtx.add(this.batchXtx);
+        this.xty.add(this.batchXty);
+        this.yty += this.batchY.dot(this.batchY);
+        this.count += this.batchRows;
+        this.batchRows = 0;
+    }
+
+    /**
+     * Adds the rows accumulated by {@code other} to {@code this}.
+     * @param other The other accumulator, which is flushed
+     * @return {@code this}
+     * @throws RuntimeException If the accumulators have a different number of features
+     */
+    public NormalEquations merge(NormalEquations other) {
+        if (other.n != this.n)
+            throw new RuntimeException("Accumulators differ in the number of features");
+        this.flush();
+        other.flush();
+        this.xtx.add(other.xtx);
+        this.xty.add(other.xty);
+        this.yty += other.yty;
+        this.count += other.count;
+        return this;
+    }
+
+    /**
+     * Stores X^T * X of all rows added so far into {@code dest}.
+     * @param dest The N x N destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getGram(Matrix dest) {
+        assertResult(dest, this.n, this.n);
+        this.flush();
+        return dest.load(this.xtx.data());
+    }
+
+    /**
+     * Stores X^T * y of all rows added so far into {@code dest}.
+     * @param dest The N x 1 destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getMoment(Matrix dest) {
+        assertResult(dest, this.n, 1);
+        this.flush();
+        return dest.load(this.xty.data());
+    }
+
+    /**
+     * @return y^T * y of all rows added so far
+     */
+    public double getSumOfSquares() {
+        this.flush();
+        return this.yty;
+    }
+
+    /**
+     * Solves the normal equations of all rows added so far and stores the weights in {@code dest}.
+     * @param dest The N x 1 destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If X^T * X is not positive-definite, e.g. if fewer than N independent rows were added
+     */
+    public Matrix weights(Matrix dest) {
+        this.flush();
+        return this.xtx.solveSPD(this.xty, dest);
+    }
+}
@@ -0,0 +1,575 @@
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ *     An M x N matrix with entries of type {@code double}, stored outside of the heap.
+ * </p>
+ * <p>
+ *     The entries are stored in column-major order like in {@link Matrix}, but indexed by {@code long}, so the
+ *     matrix may have more than 2^31 - 1 entries. They are split into segments of 2^27 entries (1 GiB), each
+ *     backed by a direct or a memory-mapped buffer, so the garbage collector never scans or copies them. The
+ *     memory is released by {@link #close()} or else when the matrix becomes unreachable.
+ * </p>
+ * <p>
+ *     NIO buffers are used because JDK 17 only ships the foreign memory API as the incubator module
+ *     {@code jdk.incubator.foreign}, which would have to be added to every compilation and launch.
+ * </p>
+ */
+public class OffHeapMatrix implements AutoCloseable {
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int BLOCK = 32; //Tile size of the transposition
+    private static final int ROW_TILE = 256;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER; //Frees a direct or unmaps a mapped buffer, null if unavailable
+    private final long m;
+    private final long n;
+    private final long mn;
+    private final int shift;
+    private final long mask;
+    private final ByteBuffer[] buffers;
+    private final DoubleBuffer[] segments;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> cls = Class.forName("sun.misc.Unsafe");
+            Field field = cls.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = cls.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) { //Leave the buffers to the garbage collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * <p>
+     *     Creates a new M x N zero-initialized matrix.
+     * </p>
+     * <p>
+     *     This method allocates direct buffers.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     */
+    public OffHeapMatrix(long m, long n) {
+        this(m, n, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Creates a new M x N zero-initialized matrix with segments of 2^{@code shift} entries.
+     */
+    OffHeapMatrix(long m, long n, int shift) {
+        this(m, n, shift, new ByteBuffer[segmentCount(m * n, shift)], ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a new M x N matrix backed by {@code buffers} in the byte order {@code order}, allocating direct
+     * buffers for the {@code null} entries.
+     */
+    private OffHeapMatrix(long m, long n, int shift, ByteBuffer[] buffers, ByteOrder order) {
+        if (m < 0 || n < 0)
+            throw new RuntimeException("Wrong dimensions");
+        this.m = m;
+        this.n = n;
+        this.mn = m * n;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.buffers = buffers;
+        this.segments = new DoubleBuffer[buffers.length];
+        for (int s = 0; s < buffers.length; ++s) {
+            if (buffers[s] == null)
+                buffers[s] = ByteBuffer.allocateDirect(this.segmentLength(s) * Double.BYTES);
+            this.segments[s] = buffers[s].order(order).asDoubleBuffer();
+        }
+    }
+
+    private static int segmentCount(long mn, int shift) {
+        long count = (mn + (1L << shift) - 1) >>> shift;
+        if (count > Integer.MAX_VALUE)
+            throw new RuntimeException("Matrix is too large");
+        return (int) count;
+    }
+
+    private int segmentLength(int s) {
+        return (int) Math.min(1L << this.shift, this.mn - ((long) s << this.shift));
+    }
+
+    /**
+     * <p>
+     *     Maps the M x N matrix stored in column-major order as little-endian {@code double} values at
+     *     {@code offset} of the file {@code path}.
+     * </p>
+     * <p>
+     *     The entries are not read until they are accessed. If {@code writable} is {@code true}, changes of the
+     *     matrix are written to the file, otherwise the file is opened read-only and changing the matrix fails.
+     * </p>
+     * @param path The file name
+     * @param offset The offset of the first entry in bytes
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @param writable Whether the matrix may be changed
+     * @return The matrix
+     * @throws RuntimeException If the file cannot be opened or is too short
+     */
+    public static OffHeapMatrix map(String path, long offset, long m, long n, boolean writable) {
+        try (FileChannel channel = writable
+                ? FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return map(channel, offset, m, n, writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Maps the M x N matrix at {@code offset} of {@code channel} like {@link #map(String, long, long, long, boolean)}.
+     * The mapping stays valid after the channel is closed.
+     */
+    static OffHeapMatrix map(FileChannel channel, long offset, long m, long n, FileChannel.MapMode mode) throws IOException {
+        long mn = m * n;
+        if (channel.size() < offset + mn * Double.BYTES)
+            throw new RuntimeException("File is too short");
+        ByteBuffer[] buffers = new ByteBuffer[segmentCount(mn, SEGMENT_SHIFT)];
+        long start, length;
+        for (int s = 0; s < buffers.length; ++s) {
+            start = (long) s << SEGMENT_SHIFT;
+            length = Math.min(1L << SEGMENT_SHIFT, mn - start);
+            buffers[s] = channel.map(mode, offset + start * Double.BYTES, length * Double.BYTES);
+        }
+        return new OffHeapMatrix(m, n, SEGMENT_SHIFT, buffers, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * <p>
+     *     Releases the memory of {@code this} at once instead of when it becomes unreachable. A mapped matrix
+     *     is unmapped, after writing its changes to the file, so the file may be truncated or deleted.
+     * </p>
+     * <p>
+     *     {@code this} must not be used afterwards, by any thread, and closing it again has no effect. If the
+     *     JDK does not allow the release, the buffers are only dropped and left to the garbage collector.
+     * </p>
+     */
+    @Override
+    public void close() {
+        for (int s = 0; s < this.buffers.length; ++s) {
+            if (this.buffers[s] == null)
+                continue;
+            if (this.buffers[s] instanceof MappedByteBuffer && !this.buffers[s].isReadOnly())
+                ((MappedByteBuffer) this.buffers[s]).force();
+            this.segments[s] = null; //Fail on use rather than touch freed memory
+            if (INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, this.buffers[s]);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            this.buffers[s] = null;
+        }
+    }
+
+    private static void assertSameSize(OffHeapMatrix a, OffHeapMatrix b) {
+        if (a.m != b.m || a.n != b.n)
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertTransposedSize(OffHeapMatrix a, OffHeapMatrix b) {
+        if (a.m != b.n || a.n != b.m)
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertSquare(OffHeapMatrix a) {
+        if (a.m != a.n)
+            throw new RuntimeException("Matrix is not square");
+    }
+
+    private static void assertMultipliable(OffHeapMatrix a, OffHeapMatrix b) {
+        if (a.n != b.m)
+            throw new RuntimeException("Matrices do not agree in width / height");
+    }
+
+    private static void assertProductOf(OffHeapMatrix a, OffHeapMatrix b, OffHeapMatrix c) {
+        if (c.m != a.m || c.n != b.n)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+    }
+
+    /**
+     * <p>
+     *     Creates a textual representation of {@code this}.
+     * </p>
+     * @return String with elements in scientific notation
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (long i = 0; i < this.m; ++i) {
+            for (long j = 0; j < this.n; ++j)
+                str.append(String.format("% 6.3e ", this.get(i + j * this.m)));
+            str.append('\n');
+        }
+        return str.toString();
+    }
+
+    /**
+     * @return The row count of {@code this}
+     */
+    public long rows() {
+        return this.m;
+    }
+
+    /**
+     * @return The column count of {@code this}
+     */
+    public long columns() {
+        return this.n;
+    }
+
+    /**
+     * @param index The column-major index
+     * @return The entry at {@code index}
+     */
+    public double get(long index) {
+        return this.segments[(int) (index >>> this.shift)].get((int) (index & this.mask));
+    }
+
+    /**
+     * @param i The row
+     * @param j The column
+     * @return The entry at row {@code i} and column {@code j}
+     */
+    public double get(long i, long j) {
+        return this.get(i + j * this.m);
+    }
+
+    /**
+     * Sets the entry at {@code index}.
+     * @param index The column-major index
+     * @param value The value
+     */
+    public void set(long index, double value) {
+        this.segments[(int) (index >>> this.shift)].put((int) (index & this.mask), value);
+    }
+
+    /**
+     * Sets the entry at row {@code i} and column {@code j}.
+     * @param i The row
+     * @param j The column
+     * @param value The value
+     */
+    public void set(long i, long j, double value) {
+        this.set(i + j * this.m, value);
+    }
+
+    /**
+     * Loads data into {@code this}, starting at the column-major index {@code offset}.
+     * @param data The data (copied)
+     * @param offset The index of the first entry to load
+     * @return {@code this}
+     */
+    public OffHeapMatrix load(double[] data, long offset) {
+        return this.load(data, 0, data.length, offset);
+    }
+
+    /**
+     * Loads the {@code length} entries of {@code data} at {@code from} into {@code this}, starting at the
+     * column-major index {@code offset}. Threads may load disjoint ranges concurrently.
+     */
+    OffHeapMatrix load(double[] data, int from, int length, long offset) {
+        long index;
+        int done = 0, run;
+        while (done < length) {
+            index = offset + done;
+            run = (int) Math.min(length - done, (1L << this.shift) - (index & this.mask));
+            this.segments[(int) (index >>> this.shift)].put((int) (index & this.mask), data, from + done, run);
+            done += run;
+        }
+        return this;
+    }
+
+    /**
+     * Loads data into {@code this}.
+     * @param data The data (copied)
+     * @return {@code this}
+     */
+    public OffHeapMatrix load(double[] data) {
+        return this.load(data, 0);
+    }
+
+    /**
+     * Loads the entries of {@code src} into {@code this}.
+     * @param src The matrix of the same size
+     * @return {@code this}
+     * @throws RuntimeException If {@code src} does not have the proper dimensions
+     */
+    public OffHeapMatrix load(Matrix src) {
+        if (this.m != src.rows() || this.n != src.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+        return this.load(src.data(), 0);
+    }
+
+    /**
+     * Loads the entries of {@code src} into {@code this}.
+     * @param src The matrix of the same size
+     * @return {@code this}
+     * @throws RuntimeException If {@code src} does not have the proper dimensions
+     */
+    public OffHeapMatrix load(OffHeapMatrix src) {
+        assertSameSize(this, src);
+        if (src != this)
+            copy(src, 0, this, 0, this.mn);
+        return this;
+    }
+
+    /**
+     * Stores the entries of {@code this} into {@code dest}.
+     * @param dest The matrix of the same size
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} does not have the proper dimensions
+     */
+    public Matrix toMatrix(Matrix dest) {
+        if (this.m != dest.rows() || this.n != dest.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+        double[] d = dest.data();
+        int done = 0, length;
+        while (done < d.length) {
+            length = (int) Math.min(d.length - done, (1L << this.shift) - (done & this.mask));
+            this.segments[(int) ((long) done >>> this.shift)].get((int) (done & this.mask), d, done, length);
+            done += length;
+        }
+        return dest;
+    }
+
+    /**
+     * Computes the dot product of {@code this} and {@code other}.
+     * @param other The other matrix
+     * @return The dot product
+     */
+    public double dot(OffHeapMatrix other) {
+        assertSameSize(this, other);
+        return dot(this, 0, other, 0, this.mn);
+    }
+
+    /**
+     * <p>
+     *     Turns {@code this} into an identity matrix.
+     * </p>
+     * <p>
+     *     Additional rows or columns after the upper left block are zeroed.
+     * </p>
+     * @return {@code this}
+     */
+    public OffHeapMatrix identity() {
+        this.fill(0, this.mn, 0d);
+        long min = Math.min(this.m, this.n);
+        for (long i = 0, index = 0; i < min; ++i, index += this.m + 1)
+            this.set(index, 1d);
+        return this;
+    }
+
+    /**
+     * <p>
+     *     Stores the transposed version of {@code this} into {@code dest}.
+     * </p>
+     * <p>
+     *     If {@code dest} is {@code this}, which requires a square matrix, the entries are swapped across the
+     *     diagonal in place without any copy. Otherwise {@code dest} must not map the same file region as
+     *     {@code this}.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public OffHeapMatrix transpose(OffHeapMatrix dest) {
+        assertTransposedSize(this, dest);
+        long iEnd, jEnd, ij, ji;
+        double v;
+        for (long j0 = 0; j0 < this.n; j0 += BLOCK) { //Tiles that fit into the L1 cache for both sides
+            jEnd = Math.min(j0 + BLOCK, this.n);
+            for (long i0 = dest == this ? j0 : 0; i0 < this.m; i0 += BLOCK) { //In place, the lower tiles only
+                iEnd = Math.min(i0 + BLOCK, this.m);
+                for (long j = j0; j < jEnd; ++j) {
+                    for (long i = dest == this ? Math.max(i0, j + 1) : i0; i < iEnd; ++i) {
+                        ij = i + j * this.m;
+                        ji = j + i * this.n;
+                        v = this.get(ij);
+                        if (dest == this) //Swap with the entry mirrored across the diagonal
+                            this.set(ij, this.get(ji));
+                        dest.set(ji, v);
+                    }
+                }
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies {@code this} with {@code other} and stores the result in {@code dest}.
+     * </p>
+     * <p>
+     *     All operands may be the same object.
+     * </p>
+     * @param other The right operand of the multiplication
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public OffHeapMatrix mul(OffHeapMatrix other, OffHeapMatrix dest) {
+        assertMultipliable(this, other);
+        assertProductOf(this, other, dest);
+        OffHeapMatrix c = dest == this || dest == other ? new OffHeapMatrix(dest.m, dest.n, dest.shift) : dest;
+        c.fill(0, c.mn, 0d);
+        long i1;
+        for (long i0 = 0; i0 < this.m; i0 += ROW_TILE) { //A block of rows of the result stays in cache across k
+            i1 = Math.min(i0 + ROW_TILE, this.m);
+            for (long j = 0; j < other.n; ++j)
+                for (long k = 0; k < this.n; ++k)
+                    axpy(other.get(k + j * other.m), this, i0 + k * this.m, c, i0 + j * c.m, i1 - i0);
+        }
+        if (c != dest)
+            dest.load(c);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this}, i.e. the transpose of {@code this} multiplied with
+     *     {@code this}, and stores it in the on-heap matrix {@code dest}.
+     * </p>
+     * <p>
+     *     Every entry is the dot product of two columns, which are contiguous. Only the upper triangle is
+     *     computed, the lower triangle is mirrored.
+     * </p>
+     * @param dest The N x N destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix gram(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+        int n = (int) this.n;
+        double[] g = dest.data();
+        for (int j = 0; j < n; ++j)
+            for (int i = 0; i <= j; ++i)
+                g[i + j * n] = g[j + i * n] = dot(this, i * this.m, this, j * this.m, this.m);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Inverts {@code this} and stores the result in {@code dest}.
+     * </p>
+     * <p>
+     *     The inversion takes O(N^3) operations, so it is only feasible for matrices that fit into the heap. It
+     *     copies {@code this} into a {@link Matrix}, inverts it there and copies the inverse back.
+     * </p>
+     * @param dest The destination matrix, which may be the same matrix as {@code this}
+     * @return {@code dest}
+     * @throws RuntimeException If {@code this} is not square, singular or has more than 2^31 - 1 entries,
+     * or if {@code dest} cannot hold the result due to its dimensions
+     */
+    public OffHeapMatrix invert(OffHeapMatrix dest) {
+        assertSquare(this);
+        assertSameSize(this, dest);
+        if (this.mn > Integer.MAX_VALUE)
+            throw new RuntimeException("Matrix is too large to invert");
+        Matrix mat = this.toMatrix(new Matrix((int) this.m, (int) this.n));
+        return dest.load(mat.invert());
+    }
+
+    /**
+     * Inverts {@code this} and stores the result in {@code this}.
+     * @return {@code this}
+     * @throws RuntimeException If {@code this} is not square, singular or has more than 2^31 - 1 entries
+     */
+    public OffHeapMatrix invert() {
+        return this.invert(this);
+    }
+
+    /**
+     * Returns the length of the run starting at {@code xOff} of {@code x} and {@code yOff} of {@code y} that lies
+     * within one segment of each, at most {@code len}.
+     */
+    private static int run(OffHeapMatrix x, long xOff, OffHeapMatrix y, long yOff, long len) {
+        return (int) Math.min(len, Math.min((1L << x.shift) - (xOff & x.mask), (1L << y.shift) - (yOff & y.mask)));
+    }
+
+    private static double dot(OffHeapMatrix x, long xOff, OffHeapMatrix y, long yOff, long len) {
+        double acc = 0d;
+        DoubleBuffer xs, ys;
+        int xi, yi, length;
+        while (len > 0) {
+            length = run(x, xOff, y, yOff, len);
+            xs = x.segments[(int) (xOff >>> x.shift)];
+            ys = y.segments[(int) (yOff >>> y.shift)];
+            xi = (int) (xOff & x.mask);
+            yi = (int) (yOff & y.mask);
+            for (int i = 0; i < length; ++i)
+                acc += xs.get(xi + i) * ys.get(yi + i);
+            xOff += length;
+            yOff += length;
+            len -= length;
+        }
+        return acc;
+    }
+
+    /**
+     * Adds {@code alpha} times the run of {@code len} entries of {@code x} at {@code xOff} to the one of {@code y}
+     * at {@code yOff}.
+     */
+    private static void axpy(double alpha, OffHeapMatrix x, long xOff, OffHeapMatrix y, long yOff, long len) {
+        DoubleBuffer xs, ys;
+        int xi, yi, length;
+        while (len > 0) {
+            length = run(x, xOff, y, yOff, len);
+            xs = x.segments[(int) (xOff >>> x.shift)];
+            ys = y.segments[(int) (yOff >>> y.shift)];
+            xi = (int) (xOff & x.mask);
+            yi = (int) (yOff & y.mask);
+            for (int i = 0; i < length; ++i)
+                ys.put(yi + i, ys.get(yi + i) + xs.get(xi + i) * alpha);
+            xOff += length;
+            yOff += length;
+            len -= length;
+        }
+    }
+
+    private static void copy(OffHeapMatrix x, long xOff, OffHeapMatrix y, long yOff, long len) {
+        int length;
+        while (len > 0) {
+            length = run(x, xOff, y, yOff, len);
+            y.segments[(int) (yOff >>> y.shift)].put((int) (yOff & y.mask),
+                    x.segments[(int) (xOff >>> x.shift)], (int) (xOff & x.mask), length);
+            xOff += length;
+            yOff += length;
+            len -= length;
+        }
+    }
+
+    private void fill(long from, long to, double value) {
+        DoubleBuffer segment;
+        int start, length;
+        while (from < to) {
+            segment = this.segments[(int) (from >>> this.shift)];
+            start = (int) (from & this.mask);
+            length = (int) Math.min(to - from, (1L << this.shift) - start);
+            for (int i = start; i < start + length; ++i)
+                segment.put(i, value);
+            from += length;
+        }
+    }
+}
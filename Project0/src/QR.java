@@ -0,0 +1,232 @@
+/**
+ * <p>
+ *     The Householder QR decomposition A = Q * R of an M x N matrix A with M &gt;= N.
+ * </p>
+ * <p>
+ *     The decomposition works directly on the tall column-major matrix, so least-squares problems are solved
+ *     without forming A^T * A and squaring its condition number. Columns are factored in panels of
+ *     {@code PANEL} columns, and each panel is applied to the remaining columns as one block reflector
+ *     I - V * T * V^T, which reads the remaining columns twice per panel instead of once per column.
+ * </p>
+ * <p>
+ *     R is stored on and above the diagonal and the Householder vectors below it (with an implicit unit
+ *     diagonal), as in LAPACK.
+ * </p>
+ */
+public class QR {
+    private static final int PANEL = 32;
+    private final int m;
+    private final int n;
+    private final double[] qr;
+    private final double[] tau;
+
+    /**
+     * Decomposes a copy of the matrix {@code a}.
+     * @param a The matrix
+     * @throws RuntimeException If {@code a} has more columns than rows
+     */
+    public QR(Matrix a) {
+        this(a, false);
+    }
+
+    /**
+     * <p>
+     *     Decomposes the matrix {@code a}.
+     * </p>
+     * <p>
+     *     If {@code inPlace} is {@code true}, the factors overwrite the data of {@code a}, so no second M x N
+     *     array is allocated. {@code a} must not be used afterwards.
+     * </p>
+     * @param a The matrix
+     * @param inPlace Whether to overwrite {@code a}
+     * @throws RuntimeException If {@code a} has more columns than rows
+     */
+    public QR(Matrix a, boolean inPlace) {
+        if (a.rows() < a.columns())
+            throw new RuntimeException("Matrix has more columns than rows");
+        this.m = a.rows();
+        this.n = a.columns();
+        this.qr = inPlace ? a.data() : a.data().clone();
+        this.tau = new double[this.n];
+        double[] t = new double[PANEL * PANEL];
+        double[] w = new double[PANEL];
+        int nb;
+        for (int k = 0; k < this.n; k += PANEL) {
+            nb = Math.min(PANEL, this.n - k);
+            this.factorPanel(k, nb);
+            if (k + nb < this.n) {
+                this.formT(k, nb, t);
+                this.applyBlockTransposed(k, nb, t, w, this.qr, k + nb, this.n);
+            }
+        }
+    }
+
+    /**
+     * Factors the columns {@code k} to {@code k + nb} with one Householder reflector per column, updating only
+     * the columns of the panel.
+     */
+    private void factorPanel(int k, int nb) {
+        int m = this.m, jJ, cC, i;
+        double norm, alpha, beta, scale, acc;
+        for (int j = k; j < k + nb; ++j) {
+            jJ = j * m; //Start of column j
+            norm = 0d;
+            for (i = j + 1; i < m; ++i)
+                norm += this.qr[jJ + i] * this.qr[jJ + i];
+            if (norm < Double.MIN_NORMAL || norm == Double.POSITIVE_INFINITY) { //Rescale if squaring under- or overflowed
+                norm = 0d;
+                for (i = j + 1; i < m; ++i)
+                    norm = Math.hypot(norm, this.qr[jJ + i]);
+            } else {
+                norm = Math.sqrt(norm);
+            }
+            alpha = this.qr[jJ + j];
+            if (norm == 0d) { //Nothing to eliminate
+                this.tau[j] = 0d;
+                continue;
+            }
+            beta = -Math.copySign(Math.hypot(alpha, norm), alpha);
+            this.tau[j] = (beta - alpha) / beta;
+            scale = 1d / (alpha - beta);
+            for (i = j + 1; i < m; ++i) //Store v below the diagonal, v[j] = 1 is implicit
+                this.qr[jJ + i] *= scale;
+            this.qr[jJ + j] = beta;
+            for (int c = j + 1; c < k + nb; ++c) { //Apply H = I - tau * v * v^T to the rest of the panel
+                cC = c * m;
+                acc = this.qr[cC + j];
+                for (i = j + 1; i < m; ++i)
+                    acc += this.qr[jJ + i] * this.qr[cC + i];
+                acc *= this.tau[j];
+                this.qr[cC + j] -= acc;
+                for (i = j + 1; i < m; ++i)
+                    this.qr[cC + i] -= acc * this.qr[jJ + i];
+            }
+        }
+    }
+
+    /**
+     * Forms the upper triangular nb x nb factor T of the block reflector H_k * ... * H_(k+nb-1) = I - V * T * V^T.
+     */
+    private void formT(int k, int nb, double[] t) {
+        int m = this.m, iI, jJ, r;
+        double acc;
+        for (int j = 0; j < nb; ++j) {
+            jJ = (k + j) * m;
+            for (int i = 0; i < j; ++i) { //t[i, j] = V[:, i]^T * v_j
+                iI = (k + i) * m;
+                acc = this.qr[iI + k + j]; //v_j has a unit at row k + j
+                for (r = k + j + 1; r < m; ++r)
+                    acc += this.qr[iI + r] * this.qr[jJ + r];
+                t[i + j * PANEL] = acc;
+            }
+            for (int i = 0; i < j; ++i) { //t[0:j, j] = -tau_j * T[0:j, 0:j] * t[0:j, j]
+                acc = 0d;
+                for (r = i; r < j; ++r)
+                    acc += t[i + r * PANEL] * t[r + j * PANEL];
+                t[i + j * PANEL] = acc;
+            }
+            for (int i = 0; i < j; ++i)
+                t[i + j * PANEL] *= -this.tau[k + j];
+            t[j + j * PANEL] = this.tau[k + j];
+        }
+    }
+
+    /**
+     * Applies (I - V * T * V^T)^T = I - V * T^T * V^T of the panel starting at column {@code k} to the columns
+     * {@code c0} to {@code c1} of the column-major matrix {@code c} with M rows.
+     */
+    private void applyBlockTransposed(int k, int nb, double[] t, double[] w, double[] c, int c0, int c1) {
+        int m = this.m, iI, cC, r, i;
+        double acc;
+        for (int col = c0; col < c1; ++col) {
+            cC = col * m;
+            for (i = 0; i < nb; ++i) { //W = V^T * C
+                iI = (k + i) * m;
+                acc = c[cC + k + i];
+                for (r = k + i + 1; r < m; ++r)
+                    acc += this.qr[iI + r] * c[cC + r];
+                w[i] = acc;
+            }
+            for (i = nb - 1; i >= 0; --i) { //W = T^T * W, bottom-up so W can be overwritten
+                acc = 0d;
+                for (r = 0; r <= i; ++r)
+                    acc += t[r + i * PANEL] * w[r];
+                w[i] = acc;
+            }
+            for (i = 0; i < nb; ++i) { //C = C - V * W
+                iI = (k + i) * m;
+                acc = w[i];
+                c[cC + k + i] -= acc;
+                for (r = k + i + 1; r < m; ++r)
+                    c[cC + r] -= this.qr[iI + r] * acc;
+            }
+        }
+    }
+
+    /**
+     * Stores the upper triangular N x N factor R into {@code dest}.
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix getR(Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.n)
+            throw new RuntimeException("Matrix is of wrong size");
+        double[] r = dest.data();
+        for (int j = 0; j < this.n; ++j)
+            for (int i = 0; i < this.n; ++i)
+                r[i + j * this.n] = i <= j ? this.qr[i + j * this.m] : 0d;
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the X minimizing the 2-norm of A * X - {@code rhs} and stores it in {@code dest}.
+     * </p>
+     * <p>
+     *     {@code rhs} is not modified.
+     * </p>
+     * @param rhs The M x P right-hand side(s)
+     * @param dest The N x P destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If A is rank deficient or if any matrix does not have the proper dimensions
+     */
+    public Matrix solve(Matrix rhs, Matrix dest) {
+        if (rhs.rows() != this.m || dest.rows() != this.n || rhs.columns() != dest.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+        int m = this.m, n = this.n, p = rhs.columns(), jJ, c, i, j;
+        double max = 0d, acc;
+        for (j = 0; j < n; ++j)
+            max = Math.max(max, Math.abs(this.qr[j * m + j]));
+        double tol = max * Math.ulp(1d) * Math.max(m, n);
+        for (j = 0; j < n; ++j)
+            if (!(Math.abs(this.qr[j * m + j]) > tol))
+                throw new RuntimeException("Matrix is rank deficient");
+        double[] b = rhs.data().clone();
+        for (int k = 0; k < p; ++k) {
+            c = k * m;
+            for (j = 0, jJ = 0; j < n; ++j, jJ += m) { //b = Q^T * b, one reflector at a time
+                acc = b[c + j];
+                for (i = j + 1; i < m; ++i)
+                    acc += this.qr[jJ + i] * b[c + i];
+                acc *= this.tau[j];
+                b[c + j] -= acc;
+                for (i = j + 1; i < m; ++i)
+                    b[c + i] -= acc * this.qr[jJ + i];
+            }
+        }
+        double[] x = dest.data();
+        for (int k = 0; k < p; ++k) {
+            c = k * m;
+            for (j = 0; j < n; ++j)
+                x[k * n + j] = b[c + j];
+            for (j = n - 1, jJ = j * m; j >= 0; --j, jJ -= m) { //Solve R * x = (Q^T * b)[0:n], column by column
+                acc = x[k * n + j] / this.qr[jJ + j];
+                x[k * n + j] = acc;
+                for (i = 0; i < j; ++i)
+                    x[k * n + i] -= this.qr[jJ + i] * acc;
+            }
+        }
+        return dest;
+    }
+}
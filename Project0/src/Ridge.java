@@ -0,0 +1,339 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Ridge regression, i.e. the weights w minimizing ||X * w - y||^2 + lambda * ||w||^2, for any number of
+ *     regularization parameters lambda.
+ * </p>
+ * <p>
+ *     The symmetric N x N Gram matrix X^T * X is decomposed once into V * diag(d) * V^T in O(N^3), by a
+ *     Householder reduction to tridiagonal form and the implicit QL method (tred2 and tql2 of EISPACK, as in
+ *     JAMA), and X^T * y is rotated into z = V^T * X^T * y. The weights w = V * diag(1 / (d + lambda)) * z then
+ *     cost O(N^2) per lambda, so a whole path of lambdas costs less than a few solves from scratch. All weights,
+ *     including one of a constant feature, are penalized.
+ * </p>
+ */
+public class Ridge {
+    private static final int MAX_ITERATIONS = 100; //Per eigenvalue, usually 1 to 3 are needed
+    private final int n;
+    private final int p;
+    private final double[] v;
+    private final double[] d;
+    private final double[] z;
+    private final double cutoff;
+
+    /**
+     * <p>
+     *     Decomposes the normal equations {@code gram} * W = {@code moment}.
+     * </p>
+     * <p>
+     *     Only the lower triangle of {@code gram} is read, neither matrix is modified.
+     * </p>
+     * @param gram The N x N Gram matrix X^T * X
+     * @param moment The N x P right-hand side(s) X^T * y
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     * or if the decomposition does not converge
+     */
+    public Ridge(Matrix gram, Matrix moment) {
+        if (gram.rows() != gram.columns())
+            throw new RuntimeException("Matrix is not square");
+        if (moment.rows() != gram.rows())
+            throw new RuntimeException("Matrices are of wrong size");
+        this.n = gram.rows();
+        this.p = moment.columns();
+        this.v = gram.data().clone();
+        this.d = new double[this.n];
+        if (this.n > 0) {
+            double[] e = new double[this.n];
+            this.tridiagonalize(e);
+            this.diagonalize(e);
+        }
+        this.cutoff = this.n > 0 ? this.n * Math.ulp(Math.max(this.d[this.n - 1], -this.d[0])) : 0d;
+        this.z = new Matrix(this.n, this.n, this.v).transposeMul(moment, new Matrix(this.n, this.p)).data();
+    }
+
+    /**
+     * Decomposes the normal equations of all rows added to {@code equations} so far.
+     * @param equations The accumulated normal equations
+     * @throws RuntimeException If the decomposition does not converge
+     */
+    public Ridge(NormalEquations equations) {
+        this(equations.getGram(new Matrix(equations.features(), equations.features())),
+                equations.getMoment(new Matrix(equations.features(), 1)));
+    }
+
+    /**
+     * Decomposes the normal equations of the design matrix {@code x} and the target(s) {@code y}.
+     * @param x The M x N design matrix
+     * @param y The M x P target(s)
+     * @return The decomposition
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     * or if the decomposition does not converge
+     */
+    public static Ridge fit(Matrix x, Matrix y) {
+        Matrix gram = new Matrix(x.columns(), x.columns());
+        Matrix moment = new Matrix(x.columns(), y.columns());
+        x.gram(gram, y, moment);
+        return new Ridge(gram, moment);
+    }
+
+    /**
+     * Returns the eigenvalue {@code j} of X^T * X, or 0 if it is not larger than N units in the last place of
+     * the largest one and thus rounding noise of a singular X^T * X.
+     */
+    private double eigenvalue(int j) {
+        return Math.abs(this.d[j]) <= this.cutoff ? 0d : this.d[j];
+    }
+
+    /**
+     * @return The eigenvalues of X^T * X in ascending order
+     */
+    public double[] getEigenvalues() {
+        return this.d.clone();
+    }
+
+    /**
+     * <p>
+     *     Computes the effective degrees of freedom, i.e. the sum of d / (d + {@code lambda}) over the eigenvalues d.
+     * </p>
+     * <p>
+     *     Eigenvalues that {@link #solve} treats as zero add nothing, so e.g. collinear features count once.
+     * </p>
+     * @param lambda The regularization parameter
+     * @return The degrees of freedom, the rank of X^T * X for {@code lambda} 0
+     */
+    public double degreesOfFreedom(double lambda) {
+        double df = 0d, e;
+        for (int j = 0; j < this.n; ++j) {
+            e = this.eigenvalue(j);
+            if (e != 0d)
+                df += e / (e + lambda);
+        }
+        return df;
+    }
+
+    /**
+     * <p>
+     *     Computes the weights for the regularization parameter {@code lambda} and stores them in {@code dest}.
+     * </p>
+     * <p>
+     *     Eigenvalues of X^T * X that are not larger than N units in the last place of the largest one are treated
+     *     as zero, so {@code lambda} 0 yields the least-squares weights if X^T * X is regular.
+     * </p>
+     * @param lambda The regularization parameter
+     * @param dest The N x P destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If X^T * X + {@code lambda} * I is singular
+     * or if {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix solve(double lambda, Matrix dest) {
+        if (dest.rows() != this.n || dest.columns() != this.p)
+            throw new RuntimeException("Matrix is of wrong size");
+        double[] w = dest.data();
+        Arrays.fill(w, 0d);
+        double f;
+        for (int k = 0, kK = 0; k < this.p; ++k, kK += this.n) {
+            for (int j = 0, jJ = 0; j < this.n; ++j, jJ += this.n) { //Add column j of V scaled by z_j / (d_j + lambda)
+                f = this.eigenvalue(j) + lambda;
+                if (!(Math.abs(f) > 0d))
+                    throw new RuntimeException("Matrix is singular");
+                f = this.z[kK + j] / f;
+                for (int i = 0; i < this.n; ++i)
+                    w[kK + i] += this.v[jJ + i] * f;
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Computes the weights for every regularization parameter of {@code lambdas}.
+     * @param lambdas The regularization parameters
+     * @return A new N x P matrix of weights per parameter
+     * @throws RuntimeException If X^T * X + lambda * I is singular for any parameter
+     */
+    public Matrix[] path(double... lambdas) {
+        Matrix[] weights = new Matrix[lambdas.length];
+        for (int l = 0; l < lambdas.length; ++l)
+            weights[l] = this.solve(lambdas[l], new Matrix(this.n, this.p));
+        return weights;
+    }
+
+    /**
+     * Reduces the symmetric matrix in {@code v} to tridiagonal form by Householder reflections, leaving the
+     * diagonal in {@code d}, the subdiagonal in {@code e} and the accumulated orthogonal transformation in
+     * {@code v} (tred2).
+     */
+    private void tridiagonalize(double[] e) {
+        int n = this.n, i, j, k;
+        double[] v = this.v, d = this.d;
+        double scale, h, f, g, hh;
+        for (j = 0; j < n; ++j)
+            d[j] = v[n - 1 + j * n];
+        for (i = n - 1; i > 0; --i) {
+            scale = 0d; //Scale to avoid under- or overflow
+            h = 0d;
+            for (k = 0; k < i; ++k)
+                scale += Math.abs(d[k]);
+            if (scale == 0d) {
+                e[i] = d[i - 1];
+                for (j = 0; j < i; ++j) {
+                    d[j] = v[i - 1 + j * n];
+                    v[i + j * n] = 0d;
+                    v[j + i * n] = 0d;
+                }
+            } else { //Generate the Householder vector
+                for (k = 0; k < i; ++k) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                f = d[i - 1];
+                g = Math.sqrt(h);
+                if (f > 0)
+                    g = -g;
+                e[i] = scale * g;
+                h -= f * g;
+                d[i - 1] = f - g;
+                for (j = 0; j < i; ++j)
+                    e[j] = 0d;
+                for (j = 0; j < i; ++j) { //Apply the similarity transformation to the remaining columns
+                    f = d[j];
+                    v[j + i * n] = f;
+                    g = e[j] + v[j + j * n] * f;
+                    for (k = j + 1; k <= i - 1; ++k) {
+                        g += v[k + j * n] * d[k];
+                        e[k] += v[k + j * n] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0d;
+                for (j = 0; j < i; ++j) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                hh = f / (h + h);
+                for (j = 0; j < i; ++j)
+                    e[j] -= hh * d[j];
+                for (j = 0; j < i; ++j) {
+                    f = d[j];
+                    g = e[j];
+                    for (k = j; k <= i - 1; ++k)
+                        v[k + j * n] -= (f * e[k] + g * d[k]);
+                    d[j] = v[i - 1 + j * n];
+                    v[i + j * n] = 0d;
+                }
+            }
+            d[i] = h;
+        }
+        for (i = 0; i < n - 1; ++i) { //Accumulate the transformations
+            v[n - 1 + i * n] = v[i + i * n];
+            v[i + i * n] = 1d;
+            h = d[i + 1];
+            if (h != 0d) {
+                for (k = 0; k <= i; ++k)
+                    d[k] = v[k + (i + 1) * n] / h;
+                for (j = 0; j <= i; ++j) {
+                    g = 0d;
+                    for (k = 0; k <= i; ++k)
+                        g += v[k + (i + 1) * n] * v[k + j * n];
+                    for (k = 0; k <= i; ++k)
+                        v[k + j * n] -= g * d[k];
+                }
+            }
+            for (k = 0; k <= i; ++k)
+                v[k + (i + 1) * n] = 0d;
+        }
+        for (j = 0; j < n; ++j) {
+            d[j] = v[n - 1 + j * n];
+            v[n - 1 + j * n] = 0d;
+        }
+        v[n - 1 + (n - 1) * n] = 1d;
+        e[0] = 0d;
+    }
+
+    /**
+     * Diagonalizes the tridiagonal matrix in {@code d} and {@code e} by the implicit QL method, rotating the
+     * columns of {@code v} into the eigenvectors, and sorts the eigenvalues ascending (tql2).
+     */
+    private void diagonalize(double[] e) {
+        int n = this.n, i, j, k, l, m, iter;
+        double[] v = this.v, d = this.d;
+        double f = 0d, tst1 = 0d, eps = Math.ulp(1d), g, p, r, dl1, h, c, c2, c3, el1, s, s2;
+        for (i = 1; i < n; ++i)
+            e[i - 1] = e[i];
+        e[n - 1] = 0d;
+        for (l = 0; l < n; ++l) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            m = l; //Find a small subdiagonal element
+            while (m < n && Math.abs(e[m]) > eps * tst1)
+                ++m;
+            if (m > l) {
+                iter = 0;
+                do {
+                    if (++iter > MAX_ITERATIONS)
+                        throw new RuntimeException("Eigendecomposition does not converge");
+                    g = d[l]; //Compute the implicit shift
+                    p = (d[l + 1] - g) / (2d * e[l]);
+                    r = Math.hypot(p, 1d);
+                    if (p < 0)
+                        r = -r;
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    dl1 = d[l + 1];
+                    h = g - d[l];
+                    for (i = l + 2; i < n; ++i)
+                        d[i] -= h;
+                    f += h;
+                    p = d[m]; //Implicit QL transformation
+                    c = 1d;
+                    c2 = c;
+                    c3 = c;
+                    el1 = e[l + 1];
+                    s = 0d;
+                    s2 = 0d;
+                    for (i = m - 1; i >= l; --i) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+                        for (k = 0; k < n; ++k) { //Rotate the columns i and i + 1
+                            h = v[k + (i + 1) * n];
+                            v[k + (i + 1) * n] = s * v[k + i * n] + c * h;
+                            v[k + i * n] = c * v[k + i * n] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] += f;
+            e[l] = 0d;
+        }
+        for (i = 0; i < n - 1; ++i) { //Sort the eigenvalues and vectors
+            k = i;
+            p = d[i];
+            for (j = i + 1; j < n; ++j) {
+                if (d[j] < p) {
+                    k = j;
+                    p = d[j];
+                }
+            }
+            if (k != i) {
+                d[k] = d[i];
+                d[i] = p;
+                for (j = 0; j < n; ++j) {
+                    p = v[j + i * n];
+                    v[j + i * n] = v[j + k * n];
+                    v[j + k * n] = p;
+                }
+            }
+        }
+    }
+}
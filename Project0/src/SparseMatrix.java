@@ -0,0 +1,395 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     An M x N matrix with entries of type {@code double} in compressed sparse column (CSC) format.
+ * </p>
+ * <p>
+ *     Only the nonzero entries are stored, column by column: the entries of column j are at the positions
+ *     {@code colPtr[j]} to {@code colPtr[j + 1]} of {@code rowIdx} (their rows, strictly increasing) and
+ *     {@code values}. Memory and the cost of all products scale with the number of nonzeros instead of M * N,
+ *     e.g. for one-hot encoded features. Products with dense operands use {@link Matrix}.
+ * </p>
+ */
+public class SparseMatrix {
+    private final int m;
+    private final int n;
+    private final int[] colPtr;
+    private final int[] rowIdx;
+    private final double[] values;
+
+    /**
+     * <p>
+     *     Creates a new M x N matrix from its CSC arrays.
+     * </p>
+     * <p>
+     *     The arrays are copied by reference and NOT cloned.
+     * </p>
+     * @param m The row count of the matrix
+     * @param n The column count of the matrix
+     * @param colPtr The N + 1 start positions of the columns, the last one being the number of nonzeros
+     * @param rowIdx The row of every nonzero, strictly increasing within a column
+     * @param values The value of every nonzero
+     * @throws RuntimeException If the arrays do not describe an M x N matrix
+     */
+    public SparseMatrix(int m, int n, int[] colPtr, int[] rowIdx, double[] values) {
+        if (colPtr.length != n + 1 || colPtr[0] != 0 || rowIdx.length < colPtr[n] || values.length < colPtr[n])
+            throw new RuntimeException("Wrong data size");
+        for (int j = 0; j < n; ++j) {
+            if (colPtr[j + 1] < colPtr[j])
+                throw new RuntimeException("Malformed sparse matrix");
+            for (int p = colPtr[j]; p < colPtr[j + 1]; ++p)
+                if (rowIdx[p] < 0 || rowIdx[p] >= m || p > colPtr[j] && rowIdx[p] <= rowIdx[p - 1])
+                    throw new RuntimeException("Malformed sparse matrix");
+        }
+        this.m = m;
+        this.n = n;
+        this.colPtr = colPtr;
+        this.rowIdx = rowIdx;
+        this.values = values;
+    }
+
+    /**
+     * Creates a new sparse matrix from the nonzero entries of {@code a}.
+     * @param a The dense matrix
+     * @return The sparse matrix
+     */
+    public static SparseMatrix fromDense(Matrix a) {
+        int m = a.rows(), n = a.columns(), nnz = 0;
+        double[] data = a.data();
+        for (double v : data)
+            if (v != 0d)
+                ++nnz;
+        int[] colPtr = new int[n + 1];
+        int[] rowIdx = new int[nnz];
+        double[] values = new double[nnz];
+        int index = 0;
+        nnz = 0;
+        for (int j = 0; j < n; ++j) {
+            for (int i = 0; i < m; ++i, ++index) {
+                if (data[index] != 0d) {
+                    rowIdx[nnz] = i;
+                    values[nnz++] = data[index];
+                }
+            }
+            colPtr[j + 1] = nnz;
+        }
+        return new SparseMatrix(m, n, colPtr, rowIdx, values);
+    }
+
+    private static void assertSameSize(SparseMatrix a, Matrix b) {
+        if (a.m != b.rows() || a.n != b.columns())
+            throw new RuntimeException("Matrices are of wrong size");
+    }
+
+    private static void assertDestination(Matrix dest, int m, int n) {
+        if (dest.rows() != m || dest.columns() != n)
+            throw new RuntimeException("Matrix cannot store result of multiplication");
+    }
+
+    /**
+     * @return The row count of {@code this}
+     */
+    public int rows() {
+        return this.m;
+    }
+
+    /**
+     * @return The column count of {@code this}
+     */
+    public int columns() {
+        return this.n;
+    }
+
+    /**
+     * @return The number of stored nonzero entries of {@code this}
+     */
+    public int nonZeros() {
+        return this.colPtr[this.n];
+    }
+
+    /**
+     * Stores {@code this} as a dense matrix into {@code dest}.
+     * @param dest The destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix toDense(Matrix dest) {
+        assertSameSize(this, dest);
+        double[] data = dest.data();
+        Arrays.fill(data, 0d);
+        for (int j = 0, jJ = 0; j < this.n; ++j, jJ += this.m)
+            for (int p = this.colPtr[j]; p < this.colPtr[j + 1]; ++p)
+                data[jJ + this.rowIdx[p]] = this.values[p];
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Creates a new matrix of the columns {@code from} to {@code to} of {@code this}.
+     * </p>
+     * <p>
+     *     E.g. the features of a whole train.csv record set read by {@link CSVReader#nextSparse(int)} are its
+     *     columns 2 to 12.
+     * </p>
+     * @param from The first column
+     * @param to The end of the columns (exclusive)
+     * @return The M x ({@code to - from}) matrix
+     * @throws RuntimeException If the columns are out of range
+     */
+    public SparseMatrix columns(int from, int to) {
+        if (from < 0 || to > this.n || from > to)
+            throw new RuntimeException("Columns are out of range");
+        int start = this.colPtr[from], end = this.colPtr[to];
+        int[] colPtr = new int[to - from + 1];
+        for (int j = from; j <= to; ++j)
+            colPtr[j - from] = this.colPtr[j] - start;
+        return new SparseMatrix(this.m, to - from, colPtr, Arrays.copyOfRange(this.rowIdx, start, end),
+                Arrays.copyOfRange(this.values, start, end));
+    }
+
+    /**
+     * <p>
+     *     Creates the transpose of {@code this}, i.e. {@code this} in compressed sparse row format.
+     * </p>
+     * <p>
+     *     The nonzeros are distributed over the rows by a counting sort in O(M + N + nonzeros).
+     * </p>
+     * @return The new N x M matrix
+     */
+    public SparseMatrix transpose() {
+        int nnz = this.nonZeros();
+        int[] colPtr = new int[this.m + 1];
+        int[] rowIdx = new int[nnz];
+        double[] values = new double[nnz];
+        for (int p = 0; p < nnz; ++p) //Count the nonzeros of every row
+            ++colPtr[this.rowIdx[p] + 1];
+        for (int i = 0; i < this.m; ++i)
+            colPtr[i + 1] += colPtr[i];
+        int[] next = Arrays.copyOf(colPtr, this.m);
+        int q;
+        for (int j = 0; j < this.n; ++j) { //Columns in increasing order keep the new rows sorted
+            for (int p = this.colPtr[j]; p < this.colPtr[j + 1]; ++p) {
+                q = next[this.rowIdx[p]]++;
+                rowIdx[q] = j;
+                values[q] = this.values[p];
+            }
+        }
+        return new SparseMatrix(this.n, this.m, colPtr, rowIdx, values);
+    }
+
+    /**
+     * Computes the dot product of {@code this} and {@code other}.
+     * @param other The other matrix
+     * @return The dot product
+     * @throws RuntimeException If {@code other} does not have the same dimensions
+     */
+    public double dot(Matrix other) {
+        assertSameSize(this, other);
+        double[] data = other.data();
+        double acc = 0d;
+        for (int j = 0, jJ = 0; j < this.n; ++j, jJ += this.m)
+            for (int p = this.colPtr[j]; p < this.colPtr[j + 1]; ++p)
+                acc += this.values[p] * data[jJ + this.rowIdx[p]];
+        return acc;
+    }
+
+    /**
+     * <p>
+     *     Computes the dot product of {@code this} and {@code other}.
+     * </p>
+     * <p>
+     *     The rows of every column pair are merged, so only entries that are nonzero in both are multiplied.
+     * </p>
+     * @param other The other matrix
+     * @return The dot product
+     * @throws RuntimeException If {@code other} does not have the same dimensions
+     */
+    public double dot(SparseMatrix other) {
+        if (this.m != other.m || this.n != other.n)
+            throw new RuntimeException("Matrices are of wrong size");
+        double acc = 0d;
+        for (int j = 0; j < this.n; ++j)
+            acc += columnDot(this, j, other, j);
+        return acc;
+    }
+
+    /**
+     * Computes the dot product of column {@code i} of {@code a} and column {@code j} of {@code b} by merging
+     * their sorted rows.
+     */
+    private static double columnDot(SparseMatrix a, int i, SparseMatrix b, int j) {
+        int p = a.colPtr[i], pEnd = a.colPtr[i + 1], q = b.colPtr[j], qEnd = b.colPtr[j + 1];
+        double acc = 0d;
+        while (p < pEnd && q < qEnd) {
+            if (a.rowIdx[p] < b.rowIdx[q])
+                ++p;
+            else if (a.rowIdx[p] > b.rowIdx[q])
+                ++q;
+            else
+                acc += a.values[p++] * b.values[q++];
+        }
+        return acc;
+    }
+
+    /**
+     * <p>
+     *     Multiplies {@code this} with the dense matrix {@code other} and stores the result in {@code dest}.
+     * </p>
+     * <p>
+     *     Every nonzero of column k of {@code this} is scattered into the column of {@code dest} once per column
+     *     of {@code other}, scaled by the entry in row k, so the cost is the number of nonzeros times the column
+     *     count of {@code other}. {@code dest} may be the same matrix as {@code other}.
+     * </p>
+     * @param other The N x P right operand of the multiplication
+     * @param dest The M x P destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix mul(Matrix other, Matrix dest) {
+        if (other.rows() != this.n)
+            throw new RuntimeException("Matrices do not agree in width / height");
+        assertDestination(dest, this.m, other.columns());
+        double[] b = other.data();
+        double[] c = dest == other ? new double[this.m * other.columns()] : dest.data();
+        Arrays.fill(c, 0d);
+        int bIndex = 0, cJ = 0;
+        double f;
+        for (int j = 0; j < other.columns(); ++j, cJ += this.m) {
+            for (int k = 0; k < this.n; ++k) {
+                f = b[bIndex++];
+                if (f != 0d)
+                    for (int p = this.colPtr[k]; p < this.colPtr[k + 1]; ++p)
+                        c[cJ + this.rowIdx[p]] += this.values[p] * f;
+            }
+        }
+        if (c != dest.data())
+            dest.load(c);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies the transpose of {@code this} with the dense matrix {@code other} and stores the result in
+     *     {@code dest}.
+     * </p>
+     * <p>
+     *     Every element of the result is the dot product of a sparse column of {@code this} and a column of
+     *     {@code other}, gathered at the stored rows. E.g. X^T * y of the normal equations. {@code dest} may be
+     *     the same matrix as {@code other}.
+     * </p>
+     * @param other The M x P right operand of the multiplication
+     * @param dest The N x P destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix transposeMul(Matrix other, Matrix dest) {
+        if (other.rows() != this.m)
+            throw new RuntimeException("Matrices do not agree in height");
+        assertDestination(dest, this.n, other.columns());
+        double[] b = other.data();
+        double[] c = dest == other ? new double[this.n * other.columns()] : dest.data();
+        int cIndex = 0;
+        double acc;
+        for (int k = 0, bK = 0; k < other.columns(); ++k, bK += this.m) {
+            for (int j = 0; j < this.n; ++j) {
+                acc = 0d;
+                for (int p = this.colPtr[j]; p < this.colPtr[j + 1]; ++p)
+                    acc += this.values[p] * b[bK + this.rowIdx[p]];
+                c[cIndex++] = acc;
+            }
+        }
+        if (c != dest.data())
+            dest.load(c);
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Multiplies the transpose of {@code this} with {@code other} and stores the dense result in {@code dest}.
+     * </p>
+     * <p>
+     *     Both matrices are transposed to rows first. Every row then adds the products of its nonzeros in
+     *     {@code this} and in {@code other}, so the cost is the sum of these pair counts over the rows instead of
+     *     M * N * P.
+     * </p>
+     * @param other The M x P right operand of the multiplication
+     * @param dest The N x P destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix transposeMul(SparseMatrix other, Matrix dest) {
+        if (other.m != this.m)
+            throw new RuntimeException("Matrices do not agree in height");
+        assertDestination(dest, this.n, other.n);
+        if (other == this)
+            return this.gram(dest);
+        SparseMatrix a = this.transpose(), b = other.transpose();
+        double[] c = dest.data();
+        Arrays.fill(c, 0d);
+        int cJ;
+        double f;
+        for (int r = 0; r < this.m; ++r) {
+            for (int q = b.colPtr[r]; q < b.colPtr[r + 1]; ++q) {
+                cJ = b.rowIdx[q] * this.n; //Column of the result
+                f = b.values[q];
+                for (int p = a.colPtr[r]; p < a.colPtr[r + 1]; ++p)
+                    c[cJ + a.rowIdx[p]] += a.values[p] * f;
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this}, i.e. the transpose of {@code this} multiplied with
+     *     {@code this}, and stores it in {@code dest}.
+     * </p>
+     * <p>
+     *     Every row adds the products of its pairs of nonzeros to the upper triangle, the lower triangle is
+     *     mirrored. A row with k nonzeros thus costs k * (k + 1) / 2 multiply-adds.
+     * </p>
+     * @param dest The N x N destination matrix
+     * @return {@code dest}
+     * @throws RuntimeException If {@code dest} cannot hold the result due to its dimensions
+     */
+    public Matrix gram(Matrix dest) {
+        assertDestination(dest, this.n, this.n);
+        SparseMatrix a = this.transpose();
+        double[] c = dest.data();
+        Arrays.fill(c, 0d);
+        int cJ;
+        double f;
+        for (int r = 0; r < this.m; ++r) {
+            for (int q = a.colPtr[r]; q < a.colPtr[r + 1]; ++q) {
+                cJ = a.rowIdx[q] * this.n;
+                f = a.values[q];
+                for (int p = a.colPtr[r]; p <= q; ++p) //Columns are sorted, so these rows are on or above the diagonal
+                    c[cJ + a.rowIdx[p]] += a.values[p] * f;
+            }
+        }
+        for (int j = 1; j < this.n; ++j)
+            for (int i = 0; i < j; ++i)
+                c[j + i * this.n] = c[i + j * this.n];
+        return dest;
+    }
+
+    /**
+     * <p>
+     *     Computes the Gram matrix of {@code this} and the transpose of {@code this} multiplied with {@code y}.
+     * </p>
+     * <p>
+     *     For a sparse design matrix X and a dense target vector y this yields both sides of the normal equations.
+     * </p>
+     * @param dest The N x N destination matrix of the Gram matrix
+     * @param y The M x P right operand of the second multiplication
+     * @param yDest The N x P destination matrix of the second multiplication
+     * @return {@code dest}
+     * @throws RuntimeException If any matrix does not have the proper dimensions
+     */
+    public Matrix gram(Matrix dest, Matrix y, Matrix yDest) {
+        assertDestination(dest, this.n, this.n);
+        this.transposeMul(y, yDest);
+        return this.gram(dest);
+    }
+}
@@ -0,0 +1,78 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ *     The SIMD implementation of {@link Kernels} with the JDK Vector API, using the widest species of the processor.
+ * </p>
+ * <p>
+ *     This source folder must be compiled with {@code --add-modules jdk.incubator.vector}. It is loaded
+ *     reflectively by {@link Kernels#get()}, so the rest of the project neither depends on it nor on the module.
+ * </p>
+ */
+public class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    public VectorKernels() {
+        if (LANES < 2) //No SIMD registers for doubles, let the scalar kernels be used
+            throw new UnsupportedOperationException("Vector species of " + LANES + " lane");
+    }
+
+    @Override
+    public String toString() {
+        return "Vector kernels, " + SPECIES;
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        DoubleVector acc0 = DoubleVector.zero(SPECIES), acc1 = acc0;
+        int i = 0, bound = SPECIES.loopBound(len);
+        for (; i + 2 * LANES <= bound; i += 2 * LANES) { //Two accumulators hide the latency of the additions
+            acc0 = DoubleVector.fromArray(SPECIES, a, aOff + i)
+                    .fma(DoubleVector.fromArray(SPECIES, b, bOff + i), acc0);
+            acc1 = DoubleVector.fromArray(SPECIES, a, aOff + i + LANES)
+                    .fma(DoubleVector.fromArray(SPECIES, b, bOff + i + LANES), acc1);
+        }
+        for (; i < bound; i += LANES)
+            acc0 = DoubleVector.fromArray(SPECIES, a, aOff + i).fma(DoubleVector.fromArray(SPECIES, b, bOff + i), acc0);
+        double acc = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < len; ++i)
+            acc += a[aOff + i] * b[bOff + i];
+        return acc;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        int i = 0, bound = SPECIES.loopBound(len);
+        for (; i < bound; i += LANES) //Multiply and add separately, like the scalar kernel
+            DoubleVector.fromArray(SPECIES, x, xOff + i).mul(alpha)
+                    .add(DoubleVector.fromArray(SPECIES, y, yOff + i))
+                    .intoArray(y, yOff + i);
+        for (; i < len; ++i)
+            y[yOff + i] += x[xOff + i] * alpha;
+    }
+
+    @Override
+    public void axpy4(double[] x, int xOff, double f0, double f1, double f2, double f3,
+                      double[] c, int c0, int c1, int c2, int c3, int len) {
+        int i = 0, bound = SPECIES.loopBound(len);
+        DoubleVector v;
+        for (; i < bound; i += LANES) {
+            v = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            v.mul(f0).add(DoubleVector.fromArray(SPECIES, c, c0 + i)).intoArray(c, c0 + i);
+            v.mul(f1).add(DoubleVector.fromArray(SPECIES, c, c1 + i)).intoArray(c, c1 + i);
+            v.mul(f2).add(DoubleVector.fromArray(SPECIES, c, c2 + i)).intoArray(c, c2 + i);
+            v.mul(f3).add(DoubleVector.fromArray(SPECIES, c, c3 + i)).intoArray(c, c3 + i);
+        }
+        double w;
+        for (; i < len; ++i) {
+            w = x[xOff + i];
+            c[c0 + i] += w * f0;
+            c[c1 + i] += w * f1;
+            c[c2 + i] += w * f2;
+            c[c3 + i] += w * f3;
+        }
+    }
+}